@@ -0,0 +1,109 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares JMH json results with the baseline in <code>benchmarks/baseline</code>
+ * and lists every benchmark with its change.
+ * <p>
+ * Usage: {@code BaselineComparison <baseline json> <results json> [threshold percent]},
+ * exits with 1 if a benchmark got slower than the threshold, 10 percent by
+ * default, and by more than the error of both scores.
+ */
+public final class BaselineComparison {
+
+    static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BaselineComparison <baseline json> <results json> [threshold percent]");
+            System.exit(2);
+        }
+        double thresholdPercent = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> results = read(args[1]);
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> result : new TreeMap<>(results).entrySet()) {
+            Score baselineScore = baseline.get(result.getKey());
+            Score score = result.getValue();
+            if (baselineScore == null) {
+                System.out.printf("%-90s %14.3f %-8s (no baseline)%n", result.getKey(), score.value, score.unit);
+                continue;
+            }
+            // positive is slower, throughput is higher the better
+            double changePercent = (score.value - baselineScore.value) / baselineScore.value * 100 * (score.higherIsBetter ? -1 : 1);
+            boolean regression = changePercent > thresholdPercent
+                    && Math.abs(score.value - baselineScore.value) > score.error + baselineScore.error;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %-8s %+7.1f%%%s%n", result.getKey(), score.value, score.unit, changePercent,
+                    regression ? "  REGRESSION" : "");
+        }
+        System.out.println(regressions + " regressions above " + thresholdPercent + "%");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return the scores by benchmark name and parameters
+     */
+    static Map<String, Score> read(String resultsFile) throws IOException {
+        JsonArray results = new JsonParser().parse(new String(Files.readAllBytes(Paths.get(resultsFile)),
+                StandardCharsets.UTF_8)).getAsJsonArray();
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            StringBuilder key = new StringBuilder(result.get("benchmark").getAsString()
+                    .replace("com.sss.testing.utils.webdriversinstaller.", ""));
+            if (result.has("params")) {
+                for (Map.Entry<String, JsonElement> param : new TreeMap<>(mapOf(result.getAsJsonObject("params"))).entrySet()) {
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+                }
+            }
+            JsonObject primaryMetric = result.getAsJsonObject("primaryMetric");
+            double error = primaryMetric.get("scoreError").isJsonPrimitive()
+                    && primaryMetric.get("scoreError").getAsJsonPrimitive().isNumber()
+                    ? primaryMetric.get("scoreError").getAsDouble() : 0;
+            scores.put(key.toString(), new Score(primaryMetric.get("score").getAsDouble(), Double.isNaN(error) ? 0 : error,
+                    primaryMetric.get("scoreUnit").getAsString(), "thrpt".equals(result.get("mode").getAsString())));
+        }
+        return scores;
+    }
+
+    private static Map<String, JsonElement> mapOf(JsonObject object) {
+        Map<String, JsonElement> map = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    static final class Score {
+        final double value;
+        final double error;
+        final String unit;
+        final boolean higherIsBetter;
+
+        Score(double value, double error, String unit, boolean higherIsBetter) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and comparing {@link ComparableVersion}s, done for every driver when
+ * a repository is sorted and resolved. Scores are per version, run with
+ * <code>-prof gc</code> for the allocations per version.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComparableVersionBenchmark {
+
+    private static final int VERSIONS = 256;
+
+    private String[] versions;
+    private ComparableVersion[] parsedVersions;
+    private Driver[] drivers;
+
+    @Setup
+    public void setup() {
+        versions = new String[VERSIONS];
+        parsedVersions = new ComparableVersion[VERSIONS];
+        drivers = new Driver[VERSIONS];
+        for (int i = 0; i < VERSIONS; i++) {
+            // fixture versions mixed with browser style versions like 80.0.3987.106
+            versions[i] = i % 4 == 0 ? (60 + i / 4) + ".0." + (3000 + i) + "." + (i % 150) : RepositoryFixtures.version(i);
+            parsedVersions[i] = new ComparableVersion(versions[i]);
+            drivers[i] = new Driver();
+            drivers[i].setVersion(versions[i]);
+        }
+    }
+
+    /**
+     * Parses versions seen before, served by the parse cache.
+     */
+    @Benchmark
+    @OperationsPerInvocation(VERSIONS)
+    public void parse(Blackhole blackhole) {
+        for (String version : versions) {
+            blackhole.consume(new ComparableVersion(version));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VERSIONS)
+    public void parseUncached(ColdParseCache cache, Blackhole blackhole) {
+        for (String version : versions) {
+            blackhole.consume(new ComparableVersion(version));
+        }
+    }
+
+    /**
+     * Compares through {@link Driver#comparableVersion()} like the
+     * repository queries do.
+     */
+    @Benchmark
+    @OperationsPerInvocation(VERSIONS)
+    public void compareDrivers(Blackhole blackhole) {
+        for (int i = 0; i < VERSIONS; i++) {
+            blackhole.consume(drivers[i].comparableVersion().compareTo(drivers[(i + 1) % VERSIONS].comparableVersion()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VERSIONS)
+    public void compare(Blackhole blackhole) {
+        for (int i = 0; i < VERSIONS; i++) {
+            blackhole.consume(parsedVersions[i].compareTo(parsedVersions[(i + 1) % VERSIONS]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VERSIONS)
+    public ComparableVersion[] sort() {
+        ComparableVersion[] sorted = parsedVersions.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @State(Scope.Thread)
+    public static class ColdParseCache {
+        @Setup(Level.Invocation)
+        public void clear() {
+            ComparableVersion.clearParseCache();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many installers starting at once against a {@link StubDriverServer} with
+ * 50 ms latency, each with its own installation directory and one shared
+ * download directory, like parallel builds on one machine. Either all install
+ * the same driver, downloaded once and taken from the download directory by
+ * the others, or each installs another version.
+ * <p>
+ * The score is the time until the last installer is done.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// lambdaj needs the opened java.lang on Java 9 and later, Java 8 ignores the option
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+@State(Scope.Benchmark)
+public class ConcurrentInstallBenchmark {
+
+    @Param({"1", "8", "32"})
+    int installers;
+
+    @Param({"true", "false"})
+    boolean sameDriver;
+
+    private Path directory;
+    private StubDriverServer server;
+    private ExecutorService executor;
+    private final List<Driver> specs = new ArrayList<>();
+    private final List<InstallWebDrivers> installations = new ArrayList<>();
+    private Path invocationDirectory;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("concurrent-install-benchmark");
+        server = new StubDriverServer();
+        server.setLatencyMillis(50);
+        for (int i = 0; i < installers; i++) {
+            Driver driver = server.addDriver(DownloadScenarioBenchmark.DRIVER_NAME, DownloadScenarioBenchmark.PLATFORM,
+                    DownloadScenarioBenchmark.BIT, RepositoryFixtures.version(i), 1024 * 1024);
+            specs.add(DownloadScenarioBenchmark.spec(driver));
+        }
+        executor = Executors.newFixedThreadPool(installers, Utils.daemonThreadFactory("concurrent-installer"));
+    }
+
+    @Setup(Level.Invocation)
+    public void createInstallers() throws Exception {
+        invocationDirectory = Files.createDirectory(directory.resolve("invocation-" + invocation++));
+        installations.clear();
+        for (int i = 0; i < installers; i++) {
+            InstallWebDrivers installer = DownloadScenarioBenchmark.installer(server, invocationDirectory,
+                    invocationDirectory.resolve("drivers-" + i));
+            installer.setKeepDownloadedWebdrivers(true);
+            installations.add(installer);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteInstallations() throws Exception {
+        for (InstallWebDrivers installer : installations) {
+            installer.awaitBackgroundDeletions();
+        }
+        RepositoryFixtures.deleteRecursively(invocationDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.close();
+        RepositoryFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<InstallResult> installConcurrently() throws Exception {
+        List<Future<InstallResult>> futures = new ArrayList<>();
+        for (int i = 0; i < installers; i++) {
+            final InstallWebDrivers installer = installations.get(i);
+            final Driver spec = specs.get(sameDriver ? 0 : i);
+            futures.add(executor.submit(new Callable<InstallResult>() {
+                @Override
+                public InstallResult call() throws Exception {
+                    return installer.install(spec);
+                }
+            }));
+        }
+        List<InstallResult> results = new ArrayList<>();
+        for (Future<InstallResult> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,205 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Installs against a {@link StubDriverServer} with injected faults and checks
+ * how the installer copes: a failed download fails the installation without
+ * caching a broken archive, the next installation succeeds, slow servers only
+ * make it slower and concurrent installers download a driver once.
+ * <p>
+ * Usage: {@code DownloadFaultScenarios [scenario...]}, all scenarios by
+ * default. Prints one line per scenario and exits with 1 if one failed.
+ */
+public final class DownloadFaultScenarios {
+
+    private static final int SIZE_BYTES = 1024 * 1024;
+    private static final int CONCURRENT_INSTALLERS = 16;
+
+    private DownloadFaultScenarios() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] scenarios = args.length > 0 ? args : new String[]{"reset", "truncate", "xml-error", "latency",
+                "throttled", "concurrent", "concurrent-reset"};
+        int failures = 0;
+        Path directory = Files.createTempDirectory("download-fault-scenarios");
+        try (StubDriverServer server = new StubDriverServer()) {
+            Driver spec = DownloadScenarioBenchmark.spec(server.addDriver(DownloadScenarioBenchmark.DRIVER_NAME,
+                    DownloadScenarioBenchmark.PLATFORM, DownloadScenarioBenchmark.BIT, "2.0.0", SIZE_BYTES));
+            for (int i = 0; i < scenarios.length; i++) {
+                server.reset();
+                Path scenarioDirectory = Files.createDirectory(directory.resolve(i + "-" + scenarios[i]));
+                long start = System.nanoTime();
+                String failure;
+                try {
+                    failure = run(scenarios[i], server, spec, scenarioDirectory);
+                } catch (Exception e) {
+                    failure = "unexpected " + e;
+                }
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                System.out.printf("%-18s %-6s %6d ms %3d archive requests %10d bytes%s%n", scenarios[i],
+                        failure == null ? "PASS" : "FAIL", millis, server.getArchiveRequests(), server.getBytesSent(),
+                        failure == null ? "" : "  " + failure);
+                if (failure != null) {
+                    failures++;
+                }
+            }
+        } finally {
+            RepositoryFixtures.deleteRecursively(directory);
+        }
+        System.out.println(failures + " of " + scenarios.length + " scenarios failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return the failure, null if the scenario passed
+     */
+    private static String run(String scenario, StubDriverServer server, Driver spec, Path directory) throws Exception {
+        switch (scenario) {
+            case "reset":
+                server.injectFault(StubDriverServer.Fault.RESET, 1);
+                return failsOnceThenInstalls(server, spec, directory);
+            case "truncate":
+                server.injectFault(StubDriverServer.Fault.TRUNCATE, 1);
+                return failsOnceThenInstalls(server, spec, directory);
+            case "xml-error":
+                server.injectFault(StubDriverServer.Fault.XML_ERROR, 1);
+                return failsOnceThenInstalls(server, spec, directory);
+            case "latency":
+                server.setLatencyMillis(200);
+                return tookAtLeast(200, server, spec, directory);
+            case "throttled":
+                // the archive compresses to about half of the driver
+                server.setBytesPerSecond(256 * 1024);
+                return tookAtLeast(1500, server, spec, directory);
+            case "concurrent":
+                server.setLatencyMillis(50);
+                return installConcurrently(server, spec, directory, 1);
+            case "concurrent-reset":
+                // the first download breaks, the waiting installers download again
+                server.setLatencyMillis(50);
+                server.injectFault(StubDriverServer.Fault.RESET, 1);
+                return installConcurrently(server, spec, directory, 2);
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    private static String failsOnceThenInstalls(StubDriverServer server, Driver spec, Path directory) throws Exception {
+        InstallWebDrivers installer = keepingInstaller(server, directory, directory.resolve("drivers"));
+        try {
+            installer.install(spec);
+            return "installed from a broken download";
+        } catch (InstallWebDriversException e) {
+            // expected
+        }
+        installer.awaitBackgroundDeletions();
+        if (containsCompletedDownload(installer.downloadDirectory)) {
+            return "cached the broken download";
+        }
+        return installs(server, spec, directory, 2);
+    }
+
+    private static String installs(StubDriverServer server, Driver spec, Path directory, long expectedArchiveRequests)
+            throws Exception {
+        InstallWebDrivers installer = keepingInstaller(server, directory, directory.resolve("drivers"));
+        InstallResult result = installer.install(spec);
+        if (!Files.exists(result.getPath())) {
+            return "installed path " + result.getPath() + " is missing";
+        }
+        if (server.getArchiveRequests() != expectedArchiveRequests) {
+            return "expected " + expectedArchiveRequests + " archive requests";
+        }
+        return null;
+    }
+
+    private static String tookAtLeast(long minimumMillis, StubDriverServer server, Driver spec, Path directory)
+            throws Exception {
+        long start = System.nanoTime();
+        String failure = installs(server, spec, directory, 1);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (failure == null && millis < minimumMillis) {
+            return "took " + millis + " ms, the server delays it by at least " + minimumMillis + " ms";
+        }
+        return failure;
+    }
+
+    /**
+     * Installers with their own installation directories and a shared
+     * download directory. After a first attempt, every installer that failed
+     * installs again.
+     */
+    private static String installConcurrently(StubDriverServer server, final Driver spec, Path directory,
+                                              long expectedArchiveRequests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_INSTALLERS,
+                Utils.daemonThreadFactory("concurrent-installer"));
+        try {
+            List<InstallWebDrivers> installers = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_INSTALLERS; i++) {
+                installers.add(keepingInstaller(server, directory, directory.resolve("drivers-" + i)));
+            }
+            for (int attempt = 0; attempt < 2 && !installers.isEmpty(); attempt++) {
+                List<Future<InstallResult>> futures = new ArrayList<>();
+                for (final InstallWebDrivers installer : installers) {
+                    futures.add(executor.submit(new Callable<InstallResult>() {
+                        @Override
+                        public InstallResult call() throws Exception {
+                            return installer.install(spec);
+                        }
+                    }));
+                }
+                List<InstallWebDrivers> failed = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        futures.get(i).get();
+                    } catch (Exception e) {
+                        failed.add(installers.get(i));
+                    }
+                }
+                installers = failed;
+            }
+            if (!installers.isEmpty()) {
+                return installers.size() + " installers failed twice";
+            }
+            if (server.getArchiveRequests() != expectedArchiveRequests) {
+                return "expected " + expectedArchiveRequests + " archive requests";
+            }
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static InstallWebDrivers keepingInstaller(StubDriverServer server, Path workDirectory,
+                                                      Path installationDirectory) throws Exception {
+        InstallWebDrivers installer = DownloadScenarioBenchmark.installer(server, workDirectory, installationDirectory);
+        installer.setKeepDownloadedWebdrivers(true);
+        return installer;
+    }
+
+    private static boolean containsCompletedDownload(Path downloadDirectory) throws Exception {
+        if (!Files.isDirectory(downloadDirectory)) {
+            return false;
+        }
+        try (Stream<Path> paths = Files.walk(downloadDirectory)) {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getFileName().toString().equals("download.completed")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole installation against a {@link StubDriverServer}: loading the
+ * repository, downloading, validating and extracting the archive. Every
+ * invocation installs into new directories, so every invocation downloads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// lambdaj needs the opened java.lang on Java 9 and later, Java 8 ignores the option
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+@State(Scope.Benchmark)
+public class DownloadScenarioBenchmark {
+
+    static final String DRIVER_NAME = "stubdriver";
+    static final String PLATFORM = "linux";
+    static final String BIT = "64";
+
+    /**
+     * <code>local</code> as fast as the loopback allows, <code>latency</code>
+     * 50 ms before every response, <code>throttled</code> 16 MB per second.
+     */
+    @Param({"local", "latency", "throttled"})
+    String scenario;
+
+    @Param({"256", "4096"})
+    int sizeKb;
+
+    private Path directory;
+    private StubDriverServer server;
+    private Driver spec;
+    private Path invocationDirectory;
+    private InstallWebDrivers installer;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("download-scenario-benchmark");
+        server = new StubDriverServer();
+        spec = spec(server.addDriver(DRIVER_NAME, PLATFORM, BIT, "2.0.0", sizeKb * 1024));
+        applyScenario(server, scenario);
+    }
+
+    @Setup(Level.Invocation)
+    public void createInstaller() throws Exception {
+        invocationDirectory = Files.createDirectory(directory.resolve("invocation-" + invocation++));
+        installer = installer(server, invocationDirectory, invocationDirectory.resolve("drivers"));
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteInstallation() throws Exception {
+        installer.awaitBackgroundDeletions();
+        RepositoryFixtures.deleteRecursively(invocationDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        server.close();
+        RepositoryFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public InstallResult install() throws Exception {
+        return installer.install(spec);
+    }
+
+    static void applyScenario(StubDriverServer server, String scenario) {
+        switch (scenario) {
+            case "local":
+                break;
+            case "latency":
+                server.setLatencyMillis(50);
+                break;
+            case "throttled":
+                server.setBytesPerSecond(16 * 1024 * 1024);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    /**
+     * @return an installer for the server's repository, working and caching
+     * only below the work directory
+     */
+    static InstallWebDrivers installer(StubDriverServer server, Path workDirectory, Path installationDirectory)
+            throws Exception {
+        InstallWebDrivers installer = new InstallWebDrivers();
+        installer.initiateConfig(installationDirectory.toFile(), server.getRepositoryUrl());
+        installer.pluginWorkingDirectory = workDirectory.resolve("webdrivers-installer");
+        installer.downloadDirectory = installer.pluginWorkingDirectory.resolve("downloads");
+        installer.tempDirectory = installer.pluginWorkingDirectory.resolve("temp");
+        return installer;
+    }
+
+    static Driver spec(Driver driver) {
+        Driver spec = new Driver();
+        spec.setName(driver.getName());
+        spec.setPlatform(driver.getPlatform());
+        spec.setBit(driver.getBit());
+        spec.setVersion(driver.getVersion());
+        return spec;
+    }
+}
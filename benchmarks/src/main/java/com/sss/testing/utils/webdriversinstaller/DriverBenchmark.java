@@ -0,0 +1,75 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Driver#toString()}, used in log and exception messages, and the
+ * version file check of {@link DriverVersionHandler#isSameVersion(Driver)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DriverBenchmark {
+
+    private Path directory;
+    private Driver driver;
+    private Driver otherVersion;
+    private DriverVersionHandler versionHandler;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("driver-benchmark");
+        driver = driver("2.32");
+        otherVersion = driver("2.33");
+        versionHandler = new DriverVersionHandler(directory);
+        versionHandler.writeVersionFile(driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        RepositoryFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String driverToString() {
+        return driver.toString();
+    }
+
+    @Benchmark
+    public boolean isSameVersion() throws Exception {
+        return versionHandler.isSameVersion(driver);
+    }
+
+    @Benchmark
+    public boolean isOtherVersion() throws Exception {
+        return versionHandler.isSameVersion(otherVersion);
+    }
+
+    private static Driver driver(String version) {
+        Driver driver = new Driver();
+        driver.setName("chromedriver");
+        driver.setPlatform("linux");
+        driver.setBit("64");
+        driver.setVersion(version);
+        driver.setUrl("https://example.org/chromedriver/" + version + "/chromedriver_linux64.zip");
+        return driver;
+    }
+}
@@ -0,0 +1,167 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.sss.testing.utils.webdriversinstaller.newversion.FileExtractor;
+import com.sss.testing.utils.webdriversinstaller.newversion.FileExtractorImpl;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of every archive format {@link FileExtractorImpl} supports, on a
+ * synthetic driver binary of several sizes. Every invocation extracts into a
+ * new directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileExtractorBenchmark {
+
+    private static final String DRIVER_FILE_NAME = "driver";
+
+    @Param({"zip", "tar", "tar.gz", "tar.bz2", "gz", "bz2"})
+    String format;
+
+    @Param({"64", "1024", "8192"})
+    int sizeKb;
+
+    private Path directory;
+    private Path archive;
+    private Path extractDirectory;
+    private FileExtractor fileExtractor;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("file-extractor-benchmark");
+        // single file formats are named after the extracted file
+        archive = directory.resolve(DRIVER_FILE_NAME + "." + format);
+        writeArchive(archive, format, driverBinary(sizeKb * 1024));
+        fileExtractor = new FileExtractorImpl(null);
+    }
+
+    @Setup(Level.Invocation)
+    public void createExtractDirectory() throws IOException {
+        extractDirectory = Files.createDirectory(directory.resolve("extracted-" + invocation++));
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteExtractDirectory() throws IOException {
+        RepositoryFixtures.deleteRecursively(extractDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        RepositoryFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Path extract() {
+        fileExtractor.extractFile(archive, extractDirectory);
+        return extractDirectory;
+    }
+
+    /**
+     * Compresses about as well as real driver binaries: random bytes mixed with
+     * repeated runs.
+     */
+    static byte[] driverBinary(int size) {
+        Random random = new Random(42);
+        byte[] binary = new byte[size];
+        int position = 0;
+        while (position < size) {
+            int length = Math.min(size - position, 64 + random.nextInt(448));
+            if (random.nextBoolean()) {
+                byte[] chunk = new byte[length];
+                random.nextBytes(chunk);
+                System.arraycopy(chunk, 0, binary, position, length);
+            } else {
+                byte value = (byte) random.nextInt(4);
+                for (int i = 0; i < length; i++) {
+                    binary[position + i] = value;
+                }
+            }
+            position += length;
+        }
+        return binary;
+    }
+
+    static void writeArchive(Path archive, String format, byte[] content) throws IOException {
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            switch (format) {
+                case "zip":
+                    try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out)) {
+                        writeEntry(zip, new ZipArchiveEntry(DRIVER_FILE_NAME), content);
+                    }
+                    break;
+                case "tar":
+                    writeTar(out, content);
+                    break;
+                case "tar.gz":
+                    try (GzipCompressorOutputStream gzip = new GzipCompressorOutputStream(out)) {
+                        writeTar(gzip, content);
+                    }
+                    break;
+                case "tar.bz2":
+                    try (BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream(out)) {
+                        writeTar(bzip2, content);
+                    }
+                    break;
+                case "gz":
+                    try (GzipCompressorOutputStream gzip = new GzipCompressorOutputStream(out)) {
+                        gzip.write(content);
+                    }
+                    break;
+                case "bz2":
+                    try (BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream(out)) {
+                        bzip2.write(content);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown archive format " + format);
+            }
+        }
+    }
+
+    private static void writeTar(OutputStream out, byte[] content) throws IOException {
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(out);
+        TarArchiveEntry entry = new TarArchiveEntry(DRIVER_FILE_NAME);
+        entry.setSize(content.length);
+        writeEntry(tar, entry, content);
+        tar.finish();
+    }
+
+    private static void writeEntry(ArchiveOutputStream archive, ArchiveEntry entry, byte[] content)
+            throws IOException {
+        archive.putArchiveEntry(entry);
+        archive.write(content);
+        archive.closeArchiveEntry();
+    }
+}
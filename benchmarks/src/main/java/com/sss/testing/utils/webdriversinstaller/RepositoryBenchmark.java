@@ -0,0 +1,84 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a large json repository in a warm JVM and querying it the way an
+ * installation does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// lambdaj needs the opened java.lang on Java 9 and later, Java 8 ignores the option
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    @Param({"20", "200"})
+    int versionsPerDriver;
+
+    private Path directory;
+    private URL repositoryUrl;
+    private Repository repository;
+    private Driver spec;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("repository-benchmark");
+        repositoryUrl = RepositoryFixtures.writeRepository(directory, versionsPerDriver).toUri().toURL();
+        repository = new Repository().load(repositoryUrl);
+        spec = new Driver();
+        spec.setName("chromedriver");
+        spec.setPlatform("linux");
+        spec.setBit("64");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        RepositoryFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Repository load() throws Exception {
+        return new Repository().load(repositoryUrl);
+    }
+
+    @Benchmark
+    public List<Driver> getDrivers() {
+        return repository.getDrivers("chromedriver", "linux", "64", null);
+    }
+
+    @Benchmark
+    public List<Driver> getDriversOfVersion() {
+        return repository.getDrivers("chromedriver", "linux", "64", RepositoryFixtures.version(versionsPerDriver / 2));
+    }
+
+    @Benchmark
+    public List<Driver> getLatestDrivers() {
+        return repository.getLatestDrivers();
+    }
+
+    @Benchmark
+    public Driver enrichDriver() throws Exception {
+        return repository.enrichDriver(spec);
+    }
+}
@@ -0,0 +1,87 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of {@link Repository#load(URL)}: every measurement runs in a fresh
+ * JVM, once against the json repository and once against its binary snapshot.
+ * The snapshot is compiled by a separate JVM, compiling it in the measured one
+ * would load and warm up the json parsing first.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class RepositoryColdStartBenchmark {
+
+    private static final String SNAPSHOT_COMPILER = "com.sss.testing.utils.webdriversinstaller.RepositorySnapshotCompiler";
+
+    @Param({"20", "200"})
+    int versionsPerDriver;
+
+    private Path directory;
+    private URL jsonOnlyUrl;
+    private URL withSnapshotUrl;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("repository-cold-start");
+        jsonOnlyUrl = RepositoryFixtures.writeRepository(directory.resolve("json"), versionsPerDriver).toUri().toURL();
+        Path withSnapshot = RepositoryFixtures.writeRepository(directory.resolve("snapshot"), versionsPerDriver);
+        withSnapshotUrl = withSnapshot.toUri().toURL();
+        compileSnapshotInSeparateJvm(withSnapshot, withSnapshot.resolveSibling("repository.snapshot"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        RepositoryFixtures.deleteRecursively(directory);
+    }
+
+    private static void compileSnapshotInSeparateJvm(Path repositoryFile, Path snapshotFile) throws Exception {
+        Path log = snapshotFile.resolveSibling("compile.log");
+        Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED",
+                "-cp", System.getProperty("java.class.path"),
+                // a class literal would load the compiler into this JVM
+                SNAPSHOT_COMPILER, repositoryFile.toString(), snapshotFile.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        if (process.waitFor() != 0 || !Files.exists(snapshotFile)) {
+            throw new IllegalStateException("Failed to compile the snapshot of " + repositoryFile + ":"
+                    + System.lineSeparator() + new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public Repository loadJson() throws Exception {
+        return new Repository().load(jsonOnlyUrl);
+    }
+
+    @Benchmark
+    public Repository loadSnapshot() throws Exception {
+        return new Repository().load(withSnapshotUrl);
+    }
+}
@@ -0,0 +1,74 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates realistic repository json files for the benchmarks.
+ */
+final class RepositoryFixtures {
+
+    static final String[] DRIVER_NAMES = {"chromedriver", "geckodriver", "operadriver", "edgedriver", "internetexplorerdriver"};
+    static final String[] PLATFORMS = {"windows", "mac", "linux"};
+    static final String[] BITS = {"32", "64"};
+
+    private RepositoryFixtures() {
+    }
+
+    /**
+     * @param versionsPerDriver number of versions per driver name, platform and bit
+     * @return repository json with {@code names * platforms * bits * versionsPerDriver} drivers
+     */
+    static String repositoryJson(int versionsPerDriver) {
+        StringBuilder json = new StringBuilder("{\n  \"drivers\": [\n");
+        boolean first = true;
+        for (String name : DRIVER_NAMES) {
+            for (String platform : PLATFORMS) {
+                for (String bit : BITS) {
+                    for (int i = 0; i < versionsPerDriver; i++) {
+                        String version = version(i);
+                        if (!first) {
+                            json.append(",\n");
+                        }
+                        first = false;
+                        json.append("    {\n")
+                                .append("      \"name\": \"").append(name).append("\",\n")
+                                .append("      \"platform\": \"").append(platform).append("\",\n")
+                                .append("      \"bit\": \"").append(bit).append("\",\n")
+                                .append("      \"version\": \"").append(version).append("\",\n")
+                                .append("      \"url\": \"https://example.org/").append(name).append('/').append(version)
+                                .append('/').append(name).append('_').append(platform).append(bit).append(".zip\"\n")
+                                .append("    }");
+                    }
+                }
+            }
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    /**
+     * Versions spread like real driver releases, e.g. 2.9.0, 2.10.1 and 3.0.0-beta1.
+     */
+    static String version(int i) {
+        int major = 2 + i / 100;
+        int minor = (i % 100) / 4;
+        int patch = i % 4;
+        return patch == 3 ? major + "." + minor + ".0-beta" + patch : major + "." + minor + "." + patch;
+    }
+
+    static Path writeRepository(Path directory, int versionsPerDriver) throws IOException {
+        Files.createDirectories(directory);
+        Path repositoryFile = directory.resolve("repository.json");
+        Files.write(repositoryFile, repositoryJson(versionsPerDriver).getBytes(StandardCharsets.UTF_8));
+        return repositoryFile;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        org.apache.commons.io.FileUtils.deleteDirectory(directory.toFile());
+    }
+}
@@ -0,0 +1,296 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Local HTTP server serving a generated repository and synthetic driver
+ * archives, for benchmarking and checking {@link DriverDownloader} without
+ * network. Latency and bandwidth apply to every response, {@link Fault}s to the
+ * next archive requests.
+ * <p>
+ * Works on plain sockets instead of an HTTP server, so faults can reset the
+ * connection or cut the body short. Every response closes its connection.
+ */
+final class StubDriverServer implements Closeable {
+
+    static final String REPOSITORY_PATH = "/repository.json";
+    static final String DRIVERS_PATH = "/drivers/";
+
+    private static final byte[] XML_ERROR_PAGE = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Error><Code>AccessDenied</Code><Message>Access Denied</Message></Error>\n").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Faults of archive responses.
+     */
+    enum Fault {
+        /**
+         * Resets the connection after half of the body.
+         */
+        RESET,
+        /**
+         * Closes the connection after half of the body announced in full.
+         */
+        TRUNCATE,
+        /**
+         * Answers with status 200 and an xml error page, like a misconfigured bucket.
+         */
+        XML_ERROR
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(Utils.daemonThreadFactory("stub-driver-server"));
+    private final Map<String, byte[]> archives = new ConcurrentHashMap<>();
+    private final List<Driver> drivers = new ArrayList<>();
+    private final AtomicLong archiveRequests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicInteger faultyRequests = new AtomicInteger();
+    private volatile Fault fault;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond = Long.MAX_VALUE;
+
+    StubDriverServer() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * Adds a driver to the repository with a zip archive holding one file
+     * named like the driver.
+     *
+     * @return the added driver
+     */
+    synchronized Driver addDriver(String name, String platform, String bit, String version, int sizeBytes) throws IOException {
+        String fileName = name + "_" + platform + bit + "_" + version + ".zip";
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(FileExtractorBenchmark.driverBinary(sizeBytes));
+            zip.closeEntry();
+        }
+        archives.put(fileName, archive.toByteArray());
+
+        Driver driver = new Driver();
+        driver.setName(name);
+        driver.setPlatform(platform);
+        driver.setBit(bit);
+        driver.setVersion(version);
+        driver.setUrl(getUrl() + DRIVERS_PATH.substring(1) + fileName);
+        drivers.add(driver);
+        return driver;
+    }
+
+    URL getRepositoryUrl() throws IOException {
+        return new URL(getUrl() + REPOSITORY_PATH.substring(1));
+    }
+
+    String getUrl() {
+        return "http://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort() + "/";
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param bytesPerSecond bandwidth of every response, {@link Long#MAX_VALUE} for no limit
+     */
+    void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Applies the fault to the next archive requests, later requests are served normally.
+     */
+    void injectFault(Fault fault, int requests) {
+        this.fault = fault;
+        faultyRequests.set(requests);
+    }
+
+    void reset() {
+        injectFault(null, 0);
+        latencyMillis = 0;
+        bytesPerSecond = Long.MAX_VALUE;
+        archiveRequests.set(0);
+        bytesSent.set(0);
+    }
+
+    long getArchiveRequests() {
+        return archiveRequests.get();
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            String requestLine = in.readLine();
+            // skips the headers up to the blank line, none of them is needed
+            String header = in.readLine();
+            while (header != null && !header.isEmpty()) {
+                header = in.readLine();
+            }
+            if (requestLine == null) {
+                socket.close();
+                return;
+            }
+            String[] request = requestLine.split(" ");
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (request.length < 2 || !"GET".equals(request[0])) {
+                respond(socket, 405, "text/plain", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+            } else if (REPOSITORY_PATH.equals(request[1])) {
+                respond(socket, 200, "application/json", repositoryJson());
+            } else if (request[1].startsWith(DRIVERS_PATH) && archives.containsKey(request[1].substring(DRIVERS_PATH.length()))) {
+                archiveRequests.incrementAndGet();
+                serveArchive(socket, archives.get(request[1].substring(DRIVERS_PATH.length())));
+            } else {
+                respond(socket, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            // the client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closed already
+            }
+        }
+    }
+
+    private void serveArchive(Socket socket, byte[] archive) throws IOException, InterruptedException {
+        Fault fault = faultyRequests.getAndDecrement() > 0 ? this.fault : null;
+        if (fault == Fault.XML_ERROR) {
+            respond(socket, 200, "application/xml", XML_ERROR_PAGE);
+            return;
+        }
+        if (fault == Fault.RESET || fault == Fault.TRUNCATE) {
+            OutputStream out = socket.getOutputStream();
+            out.write(header(200, "application/zip", archive.length));
+            write(out, archive, 0, archive.length / 2);
+            out.flush();
+            if (fault == Fault.RESET) {
+                // sends a RST instead of a FIN
+                socket.setSoLinger(true, 0);
+            }
+            socket.close();
+            return;
+        }
+        respond(socket, 200, "application/zip", archive);
+    }
+
+    private void respond(Socket socket, int status, String contentType, byte[] body)
+            throws IOException, InterruptedException {
+        OutputStream out = socket.getOutputStream();
+        out.write(header(status, contentType, body.length));
+        write(out, body, 0, body.length);
+        out.flush();
+    }
+
+    /**
+     * Writes in chunks, sleeping as long as the bandwidth requires.
+     */
+    private void write(OutputStream out, byte[] body, int offset, int length) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        int written = 0;
+        while (written < length) {
+            int chunk = Math.min(8192, length - written);
+            out.write(body, offset + written, chunk);
+            written += chunk;
+            bytesSent.addAndGet(chunk);
+            long bytesPerSecond = this.bytesPerSecond;
+            if (bytesPerSecond != Long.MAX_VALUE) {
+                long due = start + TimeUnit.SECONDS.toNanos(1) * written / bytesPerSecond;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+        }
+    }
+
+    private static byte[] header(int status, String contentType, long contentLength) {
+        return ("HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + contentLength + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            default:
+                return "Status";
+        }
+    }
+
+    private synchronized byte[] repositoryJson() {
+        StringBuilder json = new StringBuilder("{\"drivers\":[");
+        for (int i = 0; i < drivers.size(); i++) {
+            Driver driver = drivers.get(i);
+            json.append(i == 0 ? "" : ",").append("{\"name\":\"").append(driver.getName())
+                    .append("\",\"platform\":\"").append(driver.getPlatform())
+                    .append("\",\"bit\":\"").append(driver.getBit())
+                    .append("\",\"version\":\"").append(driver.getVersion())
+                    .append("\",\"url\":\"").append(driver.getUrl()).append("\"}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,177 @@
+package com.sss.testing.utils.webdriversinstaller.gradle;
+
+import com.sss.testing.utils.webdriversinstaller.Driver;
+import com.sss.testing.utils.webdriversinstaller.DriverResolution;
+import com.sss.testing.utils.webdriversinstaller.InstallResult;
+import com.sss.testing.utils.webdriversinstaller.InstallWebDrivers;
+import com.sss.testing.utils.webdriversinstaller.InstallWebDriversException;
+import com.sss.testing.utils.webdriversinstaller.ResolvedDriver;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Installs drivers into the installation directory.
+ * <p>
+ * The inputs are the resolved drivers and the hash of the repository, not the
+ * configured specs, so Gradle considers the task up to date until the
+ * repository changes or a spec resolves to another version, e.g. when a new
+ * latest version is published. The task is not cacheable, the symlinks, locks
+ * and manifest in the installation directory do not restore from the build
+ * cache.
+ */
+public abstract class InstallWebDriversTask extends DefaultTask {
+
+    /**
+     * Created once per task with the repository pinned, so the inputs and the
+     * installation load the repository once and see the same drivers.
+     */
+    private transient InstallWebDrivers iwd;
+    private transient List<DriverResolution> resolutions;
+
+    @OutputDirectory
+    public abstract DirectoryProperty getInstallationDirectory();
+
+    /**
+     * Captured by {@link #getRepositoryHash()}.
+     */
+    @Internal
+    public abstract Property<String> getRepositoryUrl();
+
+    /**
+     * Only affects the download directory outside of the output.
+     */
+    @Internal
+    public abstract Property<Boolean> getKeepDownloadedWebdrivers();
+
+    /**
+     * Captured by {@link #getResolvedDrivers()}.
+     */
+    @Internal
+    public abstract ListProperty<Map<String, String>> getDrivers();
+
+    /**
+     * @return spec, resolved version and url of every driver
+     */
+    @Input
+    public List<String> getResolvedDrivers() {
+        List<String> resolvedDrivers = new ArrayList<>();
+        for (DriverResolution resolution : resolutions()) {
+            ResolvedDriver resolved = resolution.getResolved();
+            resolvedDrivers.add(resolution.getSpec().getId() + " " + resolved.getId() + " " + resolved.getVersion()
+                    + " " + resolved.getUrl());
+        }
+        return resolvedDrivers;
+    }
+
+    @Input
+    public String getRepositoryHash() {
+        try {
+            return installWebDrivers().getRepositoryHash();
+        } catch (InstallWebDriversException e) {
+            throw new GradleException("Failed to load the driver repository: " + e.getMessage(), e);
+        }
+    }
+
+    @TaskAction
+    public void install() {
+        try {
+            for (DriverResolution resolution : resolutions()) {
+                InstallResult result = installWebDrivers().install(resolution.getResolved().toDriver());
+                getLogger().info((result.isAlreadyInstalled() ? "Already installed " : "Installed ") + result);
+            }
+            // Gradle snapshots the output right after the action
+            installWebDrivers().awaitBackgroundDeletions();
+        } catch (InstallWebDriversException e) {
+            throw new GradleException("Failed to install drivers: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while installing drivers", e);
+        }
+    }
+
+    private synchronized InstallWebDrivers installWebDrivers() {
+        if (iwd == null) {
+            String repositoryUrl = getRepositoryUrl().getOrElse(InstallWebDrivers.UPSTREAM_REPOSITORY_URL);
+            InstallWebDrivers installWebDrivers = new InstallWebDrivers();
+            installWebDrivers.initiateConfig(getInstallationDirectory().get().getAsFile(), toUrl(repositoryUrl));
+            installWebDrivers.setKeepDownloadedWebdrivers(getKeepDownloadedWebdrivers().getOrElse(true));
+            try {
+                installWebDrivers.pinRepository();
+            } catch (InstallWebDriversException e) {
+                throw new GradleException("Failed to load the driver repository: " + e.getMessage(), e);
+            }
+            iwd = installWebDrivers;
+        }
+        return iwd;
+    }
+
+    /**
+     * @return the resolutions of all specs
+     * @throws InvalidUserDataException if a spec is not in the repository
+     */
+    private synchronized List<DriverResolution> resolutions() {
+        if (resolutions == null) {
+            List<Driver> specs = new ArrayList<>();
+            for (Map<String, String> driver : getDrivers().get()) {
+                specs.add(toSpec(driver));
+            }
+            List<DriverResolution> resolved;
+            try {
+                resolved = installWebDrivers().resolveDrivers(specs);
+            } catch (InstallWebDriversException e) {
+                throw new GradleException("Failed to load the driver repository: " + e.getMessage(), e);
+            }
+            List<String> unresolved = new ArrayList<>();
+            for (DriverResolution resolution : resolved) {
+                if (!resolution.isResolved()) {
+                    unresolved.add(resolution.getSpec().getId() + ": " + resolution.getDiagnostic());
+                }
+            }
+            if (!unresolved.isEmpty()) {
+                throw new InvalidUserDataException("Drivers not in the repository " + unresolved);
+            }
+            resolutions = Collections.unmodifiableList(resolved);
+        }
+        return resolutions;
+    }
+
+    private static Driver toSpec(Map<String, String> driver) {
+        if (driver.get("name") == null) {
+            throw new InvalidUserDataException("Driver without name " + driver);
+        }
+        Driver spec = new Driver();
+        spec.setName(driver.get("name"));
+        spec.setPlatform(driver.get("platform"));
+        spec.setBit(driver.get("bit"));
+        spec.setVersion(driver.get("version"));
+        return spec;
+    }
+
+    private static URL toUrl(String location) {
+        try {
+            return new URL(location);
+        } catch (MalformedURLException e) {
+            try {
+                return new File(location).toURI().toURL();
+            } catch (MalformedURLException invalid) {
+                throw new InvalidUserDataException("Invalid repository " + location, invalid);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.sss.testing.utils.webdriversinstaller.gradle;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The <code>webdrivers</code> extension:
+ * <pre>
+ * webdrivers {
+ *     installationDirectory = layout.buildDirectory.dir('drivers')
+ *     repositoryUrl = 'https://example.com/repository.json'
+ *     driver name: 'chromedriver', platform: 'linux', bit: '64', version: '2.32'
+ *     driver name: 'geckodriver'
+ * }
+ * </pre>
+ * Drivers without version install the latest version.
+ */
+public abstract class WebDriversInstallerExtension {
+
+    public abstract DirectoryProperty getInstallationDirectory();
+
+    /**
+     * Repository json file or url, the public webdriverextensions repository by default.
+     */
+    public abstract Property<String> getRepositoryUrl();
+
+    public abstract Property<Boolean> getKeepDownloadedWebdrivers();
+
+    /**
+     * Driver specs with the keys <code>name</code>, <code>platform</code>,
+     * <code>bit</code> and <code>version</code>.
+     */
+    public abstract ListProperty<Map<String, String>> getDrivers();
+
+    public void driver(Map<String, ?> spec) {
+        Map<String, String> driver = new HashMap<>();
+        for (Map.Entry<String, ?> entry : spec.entrySet()) {
+            driver.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        getDrivers().add(driver);
+    }
+}
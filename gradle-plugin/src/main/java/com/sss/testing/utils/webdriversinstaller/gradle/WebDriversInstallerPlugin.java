@@ -0,0 +1,52 @@
+package com.sss.testing.utils.webdriversinstaller.gradle;
+
+import org.gradle.api.Action;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Adds the <code>webdrivers</code> extension and the
+ * <code>installWebDrivers</code> task, which the test tasks of Java projects
+ * depend on.
+ */
+public class WebDriversInstallerPlugin implements Plugin<Project> {
+
+    public static final String EXTENSION_NAME = "webdrivers";
+    public static final String TASK_NAME = "installWebDrivers";
+
+    @Override
+    public void apply(final Project project) {
+        final WebDriversInstallerExtension extension = project.getExtensions()
+                .create(EXTENSION_NAME, WebDriversInstallerExtension.class);
+        extension.getInstallationDirectory().convention(project.getLayout().getBuildDirectory().dir("webdrivers"));
+        extension.getKeepDownloadedWebdrivers().convention(true);
+
+        final TaskProvider<InstallWebDriversTask> installTask = project.getTasks()
+                .register(TASK_NAME, InstallWebDriversTask.class, new Action<InstallWebDriversTask>() {
+                    @Override
+                    public void execute(InstallWebDriversTask task) {
+                        task.setGroup("verification");
+                        task.setDescription("Installs the WebDrivers of the webdrivers extension.");
+                        task.getInstallationDirectory().set(extension.getInstallationDirectory());
+                        task.getRepositoryUrl().set(extension.getRepositoryUrl());
+                        task.getKeepDownloadedWebdrivers().set(extension.getKeepDownloadedWebdrivers());
+                        task.getDrivers().set(extension.getDrivers());
+                    }
+                });
+
+        project.getPlugins().withType(JavaPlugin.class, new Action<JavaPlugin>() {
+            @Override
+            public void execute(JavaPlugin javaPlugin) {
+                project.getTasks().withType(Test.class).configureEach(new Action<Test>() {
+                    @Override
+                    public void execute(Test test) {
+                        test.dependsOn(installTask);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package com.sss.testing.utils.webdriversinstaller.maven;
+
+import com.sss.testing.utils.webdriversinstaller.Driver;
+import com.sss.testing.utils.webdriversinstaller.DriverResolution;
+import com.sss.testing.utils.webdriversinstaller.InstallResult;
+import com.sss.testing.utils.webdriversinstaller.InstallWebDrivers;
+import com.sss.testing.utils.webdriversinstaller.InstallWebDriversException;
+import com.sss.testing.utils.webdriversinstaller.ResolvedDriver;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Installs the configured drivers once per build.
+ * <p>
+ * Maven has no up-to-date checks of its own, so the inputs of the last
+ * successful installation, the resolved drivers and the hash of the repository,
+ * are recorded in a stamp file. The installation is skipped while they are
+ * unchanged and all resolved versions are still installed in the installation
+ * directory. A new driver version in the repository or a changed driver
+ * configuration installs again.
+ */
+@Mojo(name = "install-drivers", defaultPhase = LifecyclePhase.PROCESS_TEST_RESOURCES, threadSafe = true)
+public class InstallDriversMojo extends AbstractMojo {
+
+    /**
+     * The drivers to install, each with name and optionally platform, bit and
+     * version. Without version the latest version is installed.
+     */
+    @Parameter(required = true)
+    private List<Driver> drivers;
+
+    @Parameter(property = "webdrivers.installationDirectory", defaultValue = "${project.basedir}/drivers")
+    private File installationDirectory;
+
+    /**
+     * Repository json file or url, the public webdriverextensions repository by default.
+     */
+    @Parameter(property = "webdrivers.repositoryUrl")
+    private String repositoryUrl;
+
+    @Parameter(property = "webdrivers.keepDownloadedWebdrivers", defaultValue = "true")
+    private boolean keepDownloadedWebdrivers;
+
+    /**
+     * Inputs of the last successful installation.
+     */
+    @Parameter(property = "webdrivers.stampFile", defaultValue = "${project.build.directory}/webdrivers-installer.stamp")
+    private File stampFile;
+
+    /**
+     * Installs even if the installation is up to date.
+     */
+    @Parameter(property = "webdrivers.force", defaultValue = "false")
+    private boolean force;
+
+    @Parameter(property = "webdrivers.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping the installation of drivers");
+            return;
+        }
+        InstallWebDrivers iwd = new InstallWebDrivers();
+        iwd.initiateConfig(installationDirectory, toUrl(repositoryUrl != null ? repositoryUrl
+                : InstallWebDrivers.UPSTREAM_REPOSITORY_URL));
+        iwd.setKeepDownloadedWebdrivers(keepDownloadedWebdrivers);
+        try {
+            // resolving, the stamp, the up to date check and the installations share one loaded repository
+            iwd.pinRepository();
+        } catch (InstallWebDriversException e) {
+            throw new MojoExecutionException("Failed to load the driver repository: " + e.getMessage(), e);
+        }
+
+        try {
+            List<ResolvedDriver> resolvedDrivers = resolve(iwd);
+            String stamp = stamp(iwd, resolvedDrivers);
+            if (!force && stamp.equals(readStamp()) && isInstalled(iwd, resolvedDrivers)) {
+                getLog().info("Drivers are up to date in " + installationDirectory);
+                return;
+            }
+            for (ResolvedDriver resolvedDriver : resolvedDrivers) {
+                InstallResult result = iwd.install(resolvedDriver.toDriver());
+                getLog().info((result.isAlreadyInstalled() ? "Already installed " : "Installed ") + result);
+            }
+            writeStamp(stamp);
+        } catch (InstallWebDriversException e) {
+            throw new MojoExecutionException("Failed to install drivers: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write " + stampFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private List<ResolvedDriver> resolve(InstallWebDrivers iwd) throws InstallWebDriversException, MojoFailureException {
+        List<ResolvedDriver> resolvedDrivers = new ArrayList<>();
+        List<String> unresolved = new ArrayList<>();
+        for (DriverResolution resolution : iwd.resolveDrivers(drivers)) {
+            if (resolution.isResolved()) {
+                resolvedDrivers.add(resolution.getResolved());
+            } else {
+                unresolved.add(resolution.getSpec().getId() + ": " + resolution.getDiagnostic());
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            throw new MojoFailureException("Drivers not in the repository " + unresolved);
+        }
+        return resolvedDrivers;
+    }
+
+    /**
+     * @return the inputs of an installation, one line each
+     */
+    private String stamp(InstallWebDrivers iwd, List<ResolvedDriver> resolvedDrivers) throws InstallWebDriversException {
+        StringBuilder stamp = new StringBuilder();
+        stamp.append("installationDirectory ").append(installationDirectory.getAbsolutePath()).append('\n');
+        stamp.append("repository ").append(iwd.getRepositoryHash()).append('\n');
+        for (ResolvedDriver resolvedDriver : resolvedDrivers) {
+            stamp.append("driver ").append(resolvedDriver.getId()).append(' ').append(resolvedDriver.getVersion())
+                    .append(' ').append(resolvedDriver.getUrl()).append('\n');
+        }
+        return stamp.toString();
+    }
+
+    private static boolean isInstalled(InstallWebDrivers iwd, List<ResolvedDriver> resolvedDrivers)
+            throws InstallWebDriversException {
+        for (ResolvedDriver resolvedDriver : resolvedDrivers) {
+            Path installedPath = iwd.getInstalledPath(resolvedDriver.toDriver());
+            if (installedPath == null || !Files.exists(installedPath)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readStamp() {
+        try {
+            return stampFile.isFile() ? new String(Files.readAllBytes(stampFile.toPath()), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            getLog().warn("Failed to read " + stampFile + ", installing again: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeStamp(String stamp) throws IOException {
+        Path stampPath = stampFile.toPath().toAbsolutePath();
+        Files.createDirectories(stampPath.getParent());
+        Path tempFile = stampPath.resolveSibling(stampPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(tempFile, stamp.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, stampPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static URL toUrl(String location) throws MojoFailureException {
+        try {
+            return new URL(location);
+        } catch (MalformedURLException e) {
+            try {
+                return new File(location).toURI().toURL();
+            } catch (MalformedURLException invalid) {
+                throw new MojoFailureException("Invalid repository " + location);
+            }
+        }
+    }
+}
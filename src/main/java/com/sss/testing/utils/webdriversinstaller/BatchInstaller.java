@@ -0,0 +1,253 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Installs all drivers of a json manifest in one JVM, in parallel, and prints
+ * a json report with the resolved versions, paths, stage timings and cache hits.
+ * <p>
+ * Usage: {@code BatchInstaller <manifest json> [report json]}, the report is
+ * printed to standard out without report file. The manifest looks like
+ * <pre>
+ * {
+ *   "installationDirectory": "drivers",
+ *   "repositoryUrl": "https://example.com/repository.json",
+ *   "repositories": [{"url": "https://example.com/mirror.json", "priority": 1}],
+ *   "keepDownloadedWebdrivers": true,
+ *   "parallelism": 4,
+ *   "drivers": [{"name": "chromedriver", "platform": "linux", "bit": "64", "version": "2.32"}]
+ * }
+ * </pre>
+ * everything but the drivers is optional. Exit codes are
+ * {@link #EXIT_SUCCESS}, {@link #EXIT_INSTALLATION_FAILED},
+ * {@link #EXIT_INVALID_MANIFEST} and {@link #EXIT_UNRESOLVED}.
+ */
+public class BatchInstaller {
+
+    /**
+     * All drivers are installed.
+     */
+    public static final int EXIT_SUCCESS = 0;
+    /**
+     * All drivers were resolved but at least one failed to install.
+     */
+    public static final int EXIT_INSTALLATION_FAILED = 1;
+    /**
+     * Wrong arguments or a manifest that could not be read.
+     */
+    public static final int EXIT_INVALID_MANIFEST = 2;
+    /**
+     * The repository could not be loaded or at least one driver is not in it,
+     * the resolved drivers are installed nevertheless.
+     */
+    public static final int EXIT_UNRESOLVED = 3;
+
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BatchInstaller <manifest json> [report json]");
+            System.exit(EXIT_INVALID_MANIFEST);
+        }
+        Manifest manifest;
+        InstallWebDrivers iwd;
+        try {
+            manifest = readManifest(Paths.get(args[0]));
+            iwd = manifest.toInstallWebDrivers();
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            System.err.println("Invalid manifest " + Utils.quote(Paths.get(args[0])) + ": " + e.getMessage());
+            System.exit(EXIT_INVALID_MANIFEST);
+            return;
+        }
+
+        JsonObject report = new JsonObject();
+        int exitCode = install(iwd, manifest, report);
+        String reportJson = PRETTY_GSON.toJson(report);
+        if (args.length == 2) {
+            try {
+                Files.write(Paths.get(args[1]), reportJson.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Failed to write report " + Utils.quote(Paths.get(args[1])) + ": " + e.getMessage());
+                System.out.println(reportJson);
+            }
+        } else {
+            System.out.println(reportJson);
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Installs the drivers of the manifest and fills the report.
+     *
+     * @return the exit code
+     */
+    static int install(InstallWebDrivers iwd, Manifest manifest, JsonObject report) {
+        long start = System.nanoTime();
+        JsonArray driverReports = new JsonArray();
+        report.add("drivers", driverReports);
+
+        List<DriverResolution> resolutions;
+        try {
+            // resolving and all installations share one loaded repository
+            iwd.pinRepository();
+            resolutions = iwd.resolveDrivers(manifest.drivers);
+        } catch (InstallWebDriversException e) {
+            report.addProperty("error", "Failed to load repository: " + e.getMessage());
+            return finish(report, EXIT_UNRESOLVED, start);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(manifest.parallelism(),
+                Utils.daemonThreadFactory("webdrivers-installer-batch"));
+        try {
+            List<Future<InstallResult>> installations = new ArrayList<>();
+            for (DriverResolution resolution : resolutions) {
+                installations.add(resolution.isResolved() ? executor.submit(installation(iwd, resolution.getResolved().toDriver())) : null);
+            }
+
+            int exitCode = EXIT_SUCCESS;
+            for (int i = 0; i < resolutions.size(); i++) {
+                DriverResolution resolution = resolutions.get(i);
+                JsonObject driverReport = new JsonObject();
+                driverReport.add("spec", PRETTY_GSON.toJsonTree(resolution.getSpec()));
+                driverReports.add(driverReport);
+                if (!resolution.isResolved()) {
+                    driverReport.addProperty("status", "UNRESOLVED");
+                    driverReport.addProperty("error", resolution.getDiagnostic());
+                    exitCode = EXIT_UNRESOLVED;
+                    continue;
+                }
+                try {
+                    reportInstallation(driverReport, installations.get(i).get());
+                } catch (ExecutionException e) {
+                    driverReport.addProperty("status", "FAILED");
+                    driverReport.addProperty("id", resolution.getResolved().getId());
+                    driverReport.addProperty("version", resolution.getResolved().getVersion());
+                    // without the debug info of the installation directories
+                    driverReport.addProperty("error", String.valueOf(e.getCause().getMessage()).trim().split("\\R", 2)[0]);
+                    if (exitCode == EXIT_SUCCESS) {
+                        exitCode = EXIT_INSTALLATION_FAILED;
+                    }
+                }
+            }
+            return finish(report, exitCode, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.addProperty("error", "Interrupted");
+            return finish(report, EXIT_INSTALLATION_FAILED, start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Callable<InstallResult> installation(final InstallWebDrivers iwd, final Driver driver) {
+        return new Callable<InstallResult>() {
+            @Override
+            public InstallResult call() throws InstallWebDriversException {
+                return iwd.install(driver);
+            }
+        };
+    }
+
+    private static void reportInstallation(JsonObject driverReport, InstallResult result) {
+        driverReport.addProperty("status", result.isAlreadyInstalled() ? "ALREADY_INSTALLED" : "INSTALLED");
+        driverReport.addProperty("id", result.getDriver().getId());
+        driverReport.addProperty("version", result.getDriver().getVersion());
+        driverReport.addProperty("path", result.getPath().toAbsolutePath().toString());
+        if (result.getVersionPath() != null) {
+            driverReport.addProperty("versionPath", result.getVersionPath().toAbsolutePath().toString());
+        }
+        driverReport.addProperty("download", result.getDownload().name());
+        driverReport.addProperty("cacheHit", result.getDownload() == InstallResult.Download.CACHED);
+        JsonObject stageMillis = new JsonObject();
+        for (Map.Entry<String, Long> stage : result.getStageMillis().entrySet()) {
+            stageMillis.addProperty(stage.getKey(), stage.getValue());
+        }
+        driverReport.add("stageMillis", stageMillis);
+    }
+
+    private static int finish(JsonObject report, int exitCode, long start) {
+        report.addProperty("exitCode", exitCode);
+        report.addProperty("totalMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return exitCode;
+    }
+
+    static Manifest readManifest(Path manifestFile) throws IOException {
+        Manifest manifest = new Gson().fromJson(new String(Files.readAllBytes(manifestFile), StandardCharsets.UTF_8),
+                Manifest.class);
+        if (manifest == null || manifest.drivers == null || manifest.drivers.isEmpty()) {
+            throw new IllegalArgumentException("no drivers");
+        }
+        return manifest;
+    }
+
+    /**
+     * The json manifest, see {@link BatchInstaller}.
+     */
+    static final class Manifest {
+        private String installationDirectory;
+        private String repositoryUrl;
+        private List<RepositoryEntry> repositories;
+        private Boolean keepDownloadedWebdrivers;
+        private Integer parallelism;
+        private List<Driver> drivers;
+
+        InstallWebDrivers toInstallWebDrivers() {
+            InstallWebDrivers iwd = new InstallWebDrivers();
+            iwd.initiateConfig(installationDirectory != null ? new File(installationDirectory) : null,
+                    repositoryUrl != null ? toUrl(repositoryUrl) : null);
+            if (repositories != null) {
+                for (RepositoryEntry repository : repositories) {
+                    iwd.addRepository(toUrl(repository.url), repository.priority);
+                }
+            }
+            if (keepDownloadedWebdrivers != null) {
+                iwd.setKeepDownloadedWebdrivers(keepDownloadedWebdrivers);
+            }
+            return iwd;
+        }
+
+        int parallelism() {
+            int threads = parallelism != null ? parallelism : Runtime.getRuntime().availableProcessors();
+            return Math.max(1, Math.min(threads, drivers.size()));
+        }
+
+        private static URL toUrl(String location) {
+            try {
+                return new URL(location);
+            } catch (MalformedURLException e) {
+                try {
+                    return new File(location).toURI().toURL();
+                } catch (MalformedURLException invalid) {
+                    throw new IllegalArgumentException("Invalid repository " + location, invalid);
+                }
+            }
+        }
+
+        private static final class RepositoryEntry {
+            private String url;
+            private int priority = RepositorySource.DEFAULT_PRIORITY;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the version of locally installed browsers. Version files next to the
+ * browser binary are read when available, otherwise the binary is run with
+ * {@code --version}. Detected versions are cached on disk keyed by the binary
+ * path and its modification time, so the probe only runs again after the
+ * browser was updated.
+ */
+public class BrowserVersionDetector {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserVersionDetector.class);
+
+    /**
+     * {@link Driver#getBrowserVersion()} value to match the installed browser.
+     */
+    public static final String INSTALLED = "installed";
+
+    static final int PROBE_TIMEOUT = 10 * 1000; // 10 seconds
+
+    private static final Pattern VERSION = Pattern.compile("(\\d+(\\.\\d+)+)");
+    private static final Pattern VERSION_DIRECTORY = Pattern.compile("\\d+(\\.\\d+)+");
+    private static final Pattern PLIST_VERSION = Pattern.compile(
+            "<key>CFBundleShortVersionString</key>\\s*<string>([^<]+)</string>");
+    private static final Pattern INI_VERSION = Pattern.compile("(?m)^Version=(\\S+)");
+
+    private static final Map<String, String> BROWSER_BY_DRIVER_NAME = new HashMap<>();
+
+    static {
+        BROWSER_BY_DRIVER_NAME.put("chromedriver", "chrome");
+        BROWSER_BY_DRIVER_NAME.put("geckodriver", "firefox");
+        BROWSER_BY_DRIVER_NAME.put("operadriver", "opera");
+        BROWSER_BY_DRIVER_NAME.put("edgedriver", "edge");
+        BROWSER_BY_DRIVER_NAME.put("msedgedriver", "edge");
+    }
+
+    private final Path cacheFile;
+    private Map<String, CachedVersion> cache;
+
+    public BrowserVersionDetector(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @return the browser a driver is for or null if unknown
+     */
+    static String browserForDriver(String driverName) {
+        return driverName == null ? null : BROWSER_BY_DRIVER_NAME.get(driverName.toLowerCase());
+    }
+
+    /**
+     * @param browser one of chrome, firefox, opera or edge
+     * @return the installed version or null if the browser is not found
+     */
+    public synchronized String detectVersion(String browser) {
+        for (Path binary : candidateBinaries(browser)) {
+            if (!Files.isRegularFile(binary)) {
+                continue;
+            }
+            try {
+                Path realBinary = binary.toRealPath();
+                String version = cachedOrProbedVersion(realBinary);
+                if (version != null) {
+                    return version;
+                }
+            } catch (IOException e) {
+                logger.debug("  Failed to detect version of " + Utils.quote(binary), e);
+            }
+        }
+        return null;
+    }
+
+    private String cachedOrProbedVersion(Path binary) throws IOException {
+        String key = binary.toString();
+        long lastModified = Files.getLastModifiedTime(binary).toMillis();
+        CachedVersion cached = cache().get(key);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.version;
+        }
+
+        String version = versionFromFiles(binary);
+        if (version == null) {
+            version = versionFromProcess(binary);
+        }
+        if (version != null) {
+            logger.info("  Detected browser " + Utils.quote(binary) + " version " + version);
+            cache().put(key, new CachedVersion(lastModified, version));
+            writeCache();
+        }
+        return version;
+    }
+
+    private static String versionFromFiles(Path binary) throws IOException {
+        Path directory = binary.getParent();
+
+        // Firefox: application.ini next to the binary (Windows, Linux) or in ../Resources (Mac)
+        for (Path ini : Arrays.asList(directory.resolve("application.ini"),
+                directory.resolveSibling("Resources").resolve("application.ini"))) {
+            if (Files.isRegularFile(ini)) {
+                String version = firstGroup(INI_VERSION, new String(Files.readAllBytes(ini), StandardCharsets.UTF_8));
+                if (version != null) {
+                    return version;
+                }
+            }
+        }
+
+        // Mac app bundle: Contents/Info.plist
+        Path plist = directory.resolveSibling("Info.plist");
+        if (Files.isRegularFile(plist)) {
+            String version = firstGroup(PLIST_VERSION, new String(Files.readAllBytes(plist), StandardCharsets.UTF_8));
+            if (version != null) {
+                return version;
+            }
+        }
+
+        // Chromium based on Windows: a directory named as the version next to the binary
+        if (binary.getFileName().toString().toLowerCase().endsWith(".exe")) {
+            ComparableVersion highest = null;
+            String highestName = null;
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    String name = child.getFileName().toString();
+                    if (Files.isDirectory(child) && VERSION_DIRECTORY.matcher(name).matches()) {
+                        ComparableVersion version = new ComparableVersion(name);
+                        if (highest == null || version.compareTo(highest) > 0) {
+                            highest = version;
+                            highestName = name;
+                        }
+                    }
+                }
+            }
+            return highestName;
+        }
+        return null;
+    }
+
+    private static String versionFromProcess(Path binary) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DefaultExecutor executor = new DefaultExecutor();
+        executor.setStreamHandler(new PumpStreamHandler(output));
+        executor.setWatchdog(new ExecuteWatchdog(PROBE_TIMEOUT));
+        executor.setExitValues(null);
+        try {
+            executor.execute(new CommandLine(binary.toFile()).addArgument("--version"));
+        } catch (IOException e) {
+            logger.debug("  Failed to run " + Utils.quote(binary) + " --version", e);
+            return null;
+        }
+        return firstGroup(VERSION, new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static String firstGroup(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static List<Path> candidateBinaries(String browser) {
+        List<Path> binaries = new ArrayList<>();
+        if (Utils.isMac()) {
+            switch (browser) {
+                case "chrome":
+                    binaries.add(Paths.get("/Applications/Google Chrome.app/Contents/MacOS/Google Chrome"));
+                    binaries.add(Paths.get("/Applications/Chromium.app/Contents/MacOS/Chromium"));
+                    break;
+                case "firefox":
+                    binaries.add(Paths.get("/Applications/Firefox.app/Contents/MacOS/firefox"));
+                    break;
+                case "opera":
+                    binaries.add(Paths.get("/Applications/Opera.app/Contents/MacOS/Opera"));
+                    break;
+                case "edge":
+                    binaries.add(Paths.get("/Applications/Microsoft Edge.app/Contents/MacOS/Microsoft Edge"));
+                    break;
+            }
+        } else if (Utils.isLinux()) {
+            switch (browser) {
+                case "chrome":
+                    binaries.addAll(onPath("google-chrome", "google-chrome-stable", "chromium", "chromium-browser"));
+                    break;
+                case "firefox":
+                    binaries.addAll(onPath("firefox"));
+                    break;
+                case "opera":
+                    binaries.addAll(onPath("opera"));
+                    break;
+                case "edge":
+                    binaries.addAll(onPath("microsoft-edge", "microsoft-edge-stable"));
+                    break;
+            }
+        } else {
+            List<String> programFiles = new ArrayList<>();
+            for (String variable : Arrays.asList("ProgramFiles", "ProgramFiles(x86)", "LOCALAPPDATA")) {
+                if (System.getenv(variable) != null) {
+                    programFiles.add(System.getenv(variable));
+                }
+            }
+            for (String root : programFiles) {
+                switch (browser) {
+                    case "chrome":
+                        binaries.add(Paths.get(root, "Google", "Chrome", "Application", "chrome.exe"));
+                        break;
+                    case "firefox":
+                        binaries.add(Paths.get(root, "Mozilla Firefox", "firefox.exe"));
+                        break;
+                    case "opera":
+                        binaries.add(Paths.get(root, "Opera", "launcher.exe"));
+                        break;
+                    case "edge":
+                        binaries.add(Paths.get(root, "Microsoft", "Edge", "Application", "msedge.exe"));
+                        break;
+                }
+            }
+        }
+        return binaries;
+    }
+
+    private static List<Path> onPath(String... executables) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        List<Path> binaries = new ArrayList<>();
+        for (String executable : executables) {
+            for (String directory : path.split(File.pathSeparator)) {
+                if (!directory.isEmpty()) {
+                    binaries.add(Paths.get(directory, executable));
+                }
+            }
+        }
+        return binaries;
+    }
+
+    private Map<String, CachedVersion> cache() {
+        if (cache == null) {
+            cache = readCache();
+        }
+        return cache;
+    }
+
+    private Map<String, CachedVersion> readCache() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return new HashMap<>();
+        }
+        try {
+            String json = new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8);
+            Map<String, CachedVersion> cached = new Gson().fromJson(json,
+                    new TypeToken<HashMap<String, CachedVersion>>() {
+                    }.getType());
+            return cached != null ? cached : new HashMap<String, CachedVersion>();
+        } catch (IOException | JsonSyntaxException e) {
+            logger.debug("  Ignoring unreadable browser version cache " + Utils.quote(cacheFile), e);
+            return new HashMap<>();
+        }
+    }
+
+    private void writeCache() {
+        try {
+            Path directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, "browser-versions", ".tmp");
+            try {
+                Files.write(tempFile, new Gson().toJson(cache).getBytes(StandardCharsets.UTF_8));
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            // only a cache, the version is probed again next time
+            logger.debug("  Failed to write browser version cache " + Utils.quote(cacheFile), e);
+        }
+    }
+
+    private static class CachedVersion {
+        private long lastModified;
+        private String version;
+
+        CachedVersion(long lastModified, String version) {
+            this.lastModified = lastModified;
+            this.version = version;
+        }
+    }
+}
@@ -20,6 +20,8 @@ package com.sss.testing.utils.webdriversinstaller;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Generic implementation of version comparison.
@@ -45,14 +47,33 @@ import java.util.*;
  * </li>
  * <li>a dash usually precedes a qualifier, and is always less important than something preceded with a dot.</li>
  * </ul></p>
+ * <p>
+ * Parsed versions are cached by their string and shared between instances, as
+ * the same versions are compared over and over again when a repository is
+ * sorted and queried. Numeric components are kept as <code>long</code>, only
+ * larger ones as <code>BigInteger</code>.</p>
  *
  * @author <a href="mailto:kenney@apache.org">Kenney Westerhof</a>
  * @author <a href="mailto:hboutemy@apache.org">Hervé Boutemy</a>
  * @see <a href="https://cwiki.apache.org/confluence/display/MAVENOLD/Versioning">"Versioning" on Maven Wiki</a>
  */
 public class ComparableVersion implements Comparable<ComparableVersion> {
+    /**
+     * Bound of the parse cache, cleared when it is full. Repositories hold a few
+     * thousand distinct versions at most.
+     */
+    static final int MAX_CACHED_VERSIONS = 8192;
+
+    /**
+     * Parsed items by version string. The items are never changed after parsing.
+     */
+    private static final ConcurrentMap<String, ListItem> PARSED_VERSIONS = new ConcurrentHashMap<>();
+
     private String value;
 
+    /**
+     * Computed on first use by {@link #equals(Object)} and {@link #hashCode()}.
+     */
     private String canonical;
 
     private ListItem items;
@@ -73,18 +94,38 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
      * Represents a numeric item in the version item list.
      */
     private static class IntegerItem implements Item {
-        private static final BigInteger BIG_INTEGER_ZERO = new BigInteger("0");
+        /**
+         * Digits that always fit into a long.
+         */
+        private static final int MAX_LONG_DIGITS = 18;
 
-        private final BigInteger value;
+        /**
+         * The value if it fits into a long.
+         */
+        private final long value;
+
+        /**
+         * The value if it does not fit into a long, otherwise null.
+         */
+        private final BigInteger bigValue;
 
         public static final IntegerItem ZERO = new IntegerItem();
 
         private IntegerItem() {
-            this.value = BIG_INTEGER_ZERO;
+            this.value = 0;
+            this.bigValue = null;
         }
 
         public IntegerItem(String str) {
-            this.value = new BigInteger(str);
+            if (str.length() <= MAX_LONG_DIGITS) {
+                this.value = Long.parseLong(str);
+                this.bigValue = null;
+            } else {
+                BigInteger bigValue = new BigInteger(str);
+                // leading zeros, e.g. 0000000000000000001
+                this.value = bigValue.bitLength() < Long.SIZE ? bigValue.longValue() : 0;
+                this.bigValue = bigValue.bitLength() < Long.SIZE ? null : bigValue;
+            }
         }
 
         public int getType() {
@@ -92,17 +133,25 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
         }
 
         public boolean isNull() {
-            return BIG_INTEGER_ZERO.equals(value);
+            return bigValue == null && value == 0;
         }
 
         public int compareTo(Item item) {
             if (item == null) {
-                return BIG_INTEGER_ZERO.equals(value) ? 0 : 1; // 1.0 == 1, 1.1 > 1
+                return isNull() ? 0 : 1; // 1.0 == 1, 1.1 > 1
             }
 
             switch (item.getType()) {
                 case INTEGER_ITEM:
-                    return value.compareTo(((IntegerItem) item).value);
+                    IntegerItem integerItem = (IntegerItem) item;
+                    if (bigValue == null && integerItem.bigValue == null) {
+                        return Long.compare(value, integerItem.value);
+                    }
+                    // a big value is always above every long value
+                    if (bigValue == null) {
+                        return -1;
+                    }
+                    return integerItem.bigValue == null ? 1 : bigValue.compareTo(integerItem.bigValue);
 
                 case STRING_ITEM:
                     return 1; // 1.1 > 1-sp
@@ -116,7 +165,7 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
         }
 
         public String toString() {
-            return value.toString();
+            return bigValue != null ? bigValue.toString() : Long.toString(value);
         }
     }
 
@@ -144,6 +193,11 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
 
         private String value;
 
+        /**
+         * {@link #comparableQualifier(String)} of the value.
+         */
+        private final String comparable;
+
         public StringItem(String value, boolean followedByDigit) {
             if (followedByDigit && value.length() == 1) {
                 // a1 = alpha-1, b1 = beta-1, m1 = milestone-1
@@ -160,6 +214,7 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
                 }
             }
             this.value = ALIASES.getProperty(value, value);
+            this.comparable = comparableQualifier(this.value);
         }
 
         public int getType() {
@@ -167,7 +222,7 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
         }
 
         public boolean isNull() {
-            return (comparableQualifier(value).compareTo(RELEASE_VERSION_INDEX) == 0);
+            return comparable.equals(RELEASE_VERSION_INDEX);
         }
 
         /**
@@ -191,14 +246,14 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
         public int compareTo(Item item) {
             if (item == null) {
                 // 1-rc < 1, 1-ga > 1
-                return comparableQualifier(value).compareTo(RELEASE_VERSION_INDEX);
+                return comparable.compareTo(RELEASE_VERSION_INDEX);
             }
             switch (item.getType()) {
                 case INTEGER_ITEM:
                     return -1; // 1.any < 1.1 ?
 
                 case STRING_ITEM:
-                    return comparableQualifier(value).compareTo(comparableQualifier(((StringItem) item).value));
+                    return comparable.compareTo(((StringItem) item).comparable);
 
                 case LIST_ITEM:
                     return -1; // 1.any < 1-1
@@ -253,12 +308,13 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
                     return 1; // 1-1 > 1-sp
 
                 case LIST_ITEM:
-                    Iterator<Item> left = iterator();
-                    Iterator<Item> right = ((ListItem) item).iterator();
+                    ListItem right = (ListItem) item;
+                    int size = Math.max(size(), right.size());
 
-                    while (left.hasNext() || right.hasNext()) {
-                        Item l = left.hasNext() ? left.next() : null;
-                        Item r = right.hasNext() ? right.next() : null;
+                    // indexed instead of iterators, compared far more often than parsed
+                    for (int i = 0; i < size; i++) {
+                        Item l = i < size() ? get(i) : null;
+                        Item r = i < right.size() ? right.get(i) : null;
 
                         // if this is shorter, then invert the compare and mul with -1
                         int result = l == null ? (r == null ? 0 : -1 * r.compareTo(l)) : l.compareTo(r);
@@ -292,10 +348,39 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
         parseVersion(version);
     }
 
+    /**
+     * Copy sharing the parsed items, which are never changed.
+     */
+    ComparableVersion(ComparableVersion version) {
+        this.value = version.value;
+        this.canonical = version.canonical;
+        this.items = version.items;
+    }
+
     public final void parseVersion(String version) {
         this.value = version;
+        this.canonical = null;
 
-        items = new ListItem();
+        ListItem parsed = PARSED_VERSIONS.get(version);
+        if (parsed == null) {
+            parsed = parse(version);
+            if (PARSED_VERSIONS.size() >= MAX_CACHED_VERSIONS) {
+                PARSED_VERSIONS.clear();
+            }
+            PARSED_VERSIONS.put(version, parsed);
+        }
+        items = parsed;
+    }
+
+    /**
+     * Clears the parse cache, for measuring parsing.
+     */
+    static void clearParseCache() {
+        PARSED_VERSIONS.clear();
+    }
+
+    private static ListItem parse(String version) {
+        ListItem items = new ListItem();
 
         version = version.toLowerCase(Locale.ENGLISH);
 
@@ -363,7 +448,7 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
             list.normalize();
         }
 
-        canonical = items.toString();
+        return items;
     }
 
     private static Item parseItem(boolean isDigit, String buf) {
@@ -379,10 +464,19 @@ public class ComparableVersion implements Comparable<ComparableVersion> {
     }
 
     public boolean equals(Object o) {
-        return (o instanceof ComparableVersion) && canonical.equals(((ComparableVersion) o).canonical);
+        return (o instanceof ComparableVersion) && canonical().equals(((ComparableVersion) o).canonical());
     }
 
     public int hashCode() {
-        return canonical.hashCode();
+        return canonical().hashCode();
+    }
+
+    private String canonical() {
+        String canonical = this.canonical;
+        if (canonical == null) {
+            canonical = items.toString();
+            this.canonical = canonical;
+        }
+        return canonical;
     }
 }
@@ -0,0 +1,68 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+/**
+ * Reports to two metrics, e.g. the JFR events and the metrics of the user.
+ */
+final class CompositeInstallMetrics implements InstallMetrics {
+
+    private final InstallMetrics first;
+    private final InstallMetrics second;
+
+    private CompositeInstallMetrics(InstallMetrics first, InstallMetrics second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    static InstallMetrics of(InstallMetrics first, InstallMetrics second) {
+        if (first == NOOP) {
+            return second;
+        }
+        return second == NOOP ? first : new CompositeInstallMetrics(first, second);
+    }
+
+    @Override
+    public StageRecorder start(String stage, String driverId) {
+        final StageRecorder firstRecorder = first.start(stage, driverId);
+        final StageRecorder secondRecorder = second.start(stage, driverId);
+        if (firstRecorder == StageRecorder.NOOP) {
+            return secondRecorder;
+        }
+        if (secondRecorder == StageRecorder.NOOP) {
+            return firstRecorder;
+        }
+        return new StageRecorder() {
+            @Override
+            public void url(String url) {
+                firstRecorder.url(url);
+                secondRecorder.url(url);
+            }
+
+            @Override
+            public void addBytes(long bytes) {
+                firstRecorder.addBytes(bytes);
+                secondRecorder.addBytes(bytes);
+            }
+
+            @Override
+            public void cacheOutcome(CacheOutcome outcome) {
+                firstRecorder.cacheOutcome(outcome);
+                secondRecorder.cacheOutcome(outcome);
+            }
+
+            @Override
+            public void retry() {
+                firstRecorder.retry();
+                secondRecorder.retry();
+            }
+
+            @Override
+            public void end(boolean succeeded) {
+                try {
+                    firstRecorder.end(succeeded);
+                } finally {
+                    secondRecorder.end(succeeded);
+                }
+            }
+        };
+    }
+}
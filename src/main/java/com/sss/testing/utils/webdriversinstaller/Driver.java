@@ -1,5 +1,6 @@
 package com.sss.testing.utils.webdriversinstaller;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.net.MalformedURLException;
@@ -7,12 +8,21 @@ import java.net.URL;
 
 public class Driver {
 
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
     private String name;
     private String platform;
     private String bit;
     private String version;
     private String url;
     private String fileMatchInside;
+    private String browserVersion;
+    private String browserVersions;
+    /**
+     * Parsed {@link #version}, transient to keep it out of the json. Never
+     * handed out, {@link ComparableVersion#parseVersion(String)} could change it.
+     */
+    private transient volatile ComparableVersion comparableVersion;
 
     public String getId() {
         return name
@@ -57,10 +67,27 @@ public class Driver {
 
     public void setVersion(String version) {
         this.version = version;
+        this.comparableVersion = null;
     }
 
+    /**
+     * @return a copy of the parsed version, the version is parsed once
+     */
     public ComparableVersion getComparableVersion() {
-        return new ComparableVersion(version);
+        return new ComparableVersion(comparableVersion());
+    }
+
+    /**
+     * @return the parsed version shared by all calls, for comparisons that
+     * neither change nor keep it
+     */
+    ComparableVersion comparableVersion() {
+        ComparableVersion comparableVersion = this.comparableVersion;
+        if (comparableVersion == null) {
+            comparableVersion = new ComparableVersion(version);
+            this.comparableVersion = comparableVersion;
+        }
+        return comparableVersion;
     }
 
     public String getUrl() {
@@ -80,6 +107,9 @@ public class Driver {
     }
 
     public String getFilenameFromUrl() {
+        if (MavenArtifact.isMavenUrl(url)) {
+            return MavenArtifact.of(this).getFileName();
+        }
         try {
             String file = new URL(url).getFile();
             return file.replaceAll(".*\\/", "");
@@ -96,8 +126,33 @@ public class Driver {
         this.fileMatchInside = fileMatchInside;
     }
 
+    /**
+     * Browser version the driver must support, either a version or
+     * {@value BrowserVersionDetector#INSTALLED} to detect the version of the
+     * locally installed browser. Only used when no version is set.
+     */
+    public String getBrowserVersion() {
+        return browserVersion;
+    }
+
+    public void setBrowserVersion(String browserVersion) {
+        this.browserVersion = browserVersion;
+    }
+
+    /**
+     * Range of browser versions supported by this driver, set on repository
+     * entries, see {@link VersionRange}.
+     */
+    public String getBrowserVersions() {
+        return browserVersions;
+    }
+
+    public void setBrowserVersions(String browserVersions) {
+        this.browserVersions = browserVersions;
+    }
+
     @Override
     public String toString() {
-        return new GsonBuilder().setPrettyPrinting().create().toJson(this);
+        return GSON.toJson(this);
     }
 }
@@ -0,0 +1,304 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A portable bundle of driver archives together with the repository entries
+ * describing them, for installations without network access, see
+ * {@link InstallWebDrivers#useBundle(Path)}.
+ * <p>
+ * The bundle is a zip file holding <code>repository.json</code> and one stored
+ * (uncompressed) entry per archive, named after the archive url. Entries are
+ * read with random access through the central directory of the zip file, the
+ * bundle is never unpacked.
+ * <p>
+ * Usage: {@code DriverBundle <bundle file> <names> <platforms> <bits> [repository json file or url]},
+ * names, platforms and bits are comma separated, the latest version of every
+ * combination is prefetched.
+ */
+public final class DriverBundle implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DriverBundle.class);
+
+    static final String REPOSITORY_ENTRY = "repository.json";
+    static final String ARCHIVES_DIRECTORY = "archives/";
+
+    private static final int MAX_PARALLEL_DOWNLOADS = 8;
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private final ZipFile zipFile;
+
+    private DriverBundle(Path file, ZipFile zipFile) {
+        this.file = file;
+        this.zipFile = zipFile;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4 || args.length > 5) {
+            System.err.println("Usage: DriverBundle <bundle file> <names> <platforms> <bits> [repository json file or url]");
+            System.exit(2);
+        }
+        InstallWebDrivers iwd = new InstallWebDrivers();
+        iwd.initiateConfig(toUrl(args.length == 5 ? args[4] : InstallWebDrivers.UPSTREAM_REPOSITORY_URL));
+        List<Driver> specs = matrix(Arrays.asList(args[1].split(",")), Arrays.asList(args[2].split(",")),
+                Arrays.asList(args[3].split(",")));
+        for (DriverResolution resolution : prefetch(iwd, specs, Paths.get(args[0]))) {
+            System.out.println(resolution.getSpec().getId() + ": " + resolution);
+        }
+    }
+
+    /**
+     * @return one spec per combination of name, platform and bit, without version
+     */
+    public static List<Driver> matrix(List<String> names, List<String> platforms, List<String> bits) {
+        List<Driver> specs = new ArrayList<>();
+        for (String name : names) {
+            for (String platform : platforms) {
+                for (String bit : bits) {
+                    Driver spec = new Driver();
+                    spec.setName(name.trim());
+                    spec.setPlatform(platform.trim());
+                    spec.setBit(bit.trim());
+                    specs.add(spec);
+                }
+            }
+        }
+        return specs;
+    }
+
+    /**
+     * Resolves the specs against the repositories of the given instance,
+     * downloads the archives in parallel, each url once, and writes them into a
+     * new bundle. Specs that cannot be resolved are skipped, an existing bundle
+     * file is replaced atomically.
+     *
+     * @return one resolution per spec in the same order
+     * @throws InstallWebDriversException if no spec could be resolved or a download failed
+     */
+    public static List<DriverResolution> prefetch(final InstallWebDrivers iwd, List<Driver> specs, Path bundleFile)
+            throws InstallWebDriversException {
+        Repository repository = iwd.loadRepository();
+        List<DriverResolution> resolutions = repository.resolveAll(specs);
+
+        // one download per url, e.g. for the 32 bit driver used for 32 and 64 bit
+        final Map<String, Driver> driversByUrl = new LinkedHashMap<>();
+        for (DriverResolution resolution : resolutions) {
+            if (resolution.isResolved()) {
+                Driver driver = resolution.getResolved().toDriver();
+                if (!driversByUrl.containsKey(archiveUrl(driver))) {
+                    driversByUrl.put(archiveUrl(driver), driver);
+                }
+            } else {
+                logger.info("  Skipping " + resolution.getSpec().getId() + " cause of " + resolution.getDiagnostic());
+            }
+        }
+        if (driversByUrl.isEmpty()) {
+            throw new InstallWebDriversException("None of the drivers " + specs + " could be resolved: " + resolutions);
+        }
+
+        List<Driver> repositoryDrivers = new ArrayList<>();
+        for (Driver driver : repository.getDrivers()) {
+            if (driver.getUrl() != null && driversByUrl.containsKey(archiveUrl(driver))) {
+                repositoryDrivers.add(driver);
+            }
+        }
+
+        logger.info("Prefetching " + driversByUrl.size() + " drivers into " + Utils.quote(bundleFile));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(driversByUrl.size(), MAX_PARALLEL_DOWNLOADS),
+                Utils.daemonThreadFactory("webdrivers-installer-prefetch"));
+        try (final WorkDirectories.WorkDirectory workDirectory = WorkDirectories.create(iwd.tempDirectory)) {
+            List<Future<Path>> downloads = new ArrayList<>();
+            int index = 0;
+            for (final Driver driver : driversByUrl.values()) {
+                final Path driverWorkDirectory = workDirectory.getPath().resolve(String.valueOf(index++));
+                downloads.add(executor.submit(new Callable<Path>() {
+                    @Override
+                    public Path call() throws InstallWebDriversException, IOException {
+                        return iwd.download(new DriverDownloader(iwd), driver, driverWorkDirectory);
+                    }
+                }));
+            }
+
+            Map<String, Path> archives = new LinkedHashMap<>();
+            index = 0;
+            for (Driver driver : driversByUrl.values()) {
+                archives.put(archiveEntryName(driver), await(downloads.get(index++), driver));
+            }
+            write(bundleFile, repositoryDrivers, archives);
+        } catch (IOException e) {
+            throw new InstallWebDriversException("Failed to write driver bundle " + Utils.quote(bundleFile)
+                    + " cause of " + e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return resolutions;
+    }
+
+    /**
+     * Opens a bundle for reading, the bundle is read with random access.
+     */
+    public static DriverBundle open(Path file) throws IOException {
+        ZipFile zipFile = new ZipFile(file.toFile());
+        if (zipFile.getEntry(REPOSITORY_ENTRY) == null) {
+            zipFile.close();
+            throw new IOException(Utils.quote(file) + " is no driver bundle, it has no " + REPOSITORY_ENTRY);
+        }
+        return new DriverBundle(file, zipFile);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return url of the repository json in the bundle
+     */
+    public URL getRepositoryUrl() throws MalformedURLException {
+        return new URL("jar:" + file.toAbsolutePath().toUri() + "!/" + REPOSITORY_ENTRY);
+    }
+
+    boolean contains(Driver driver) {
+        return driver.getUrl() != null && zipFile.getEntry(archiveEntryName(driver)) != null;
+    }
+
+    /**
+     * Copies the archive of the driver out of the bundle.
+     */
+    void copyArchive(Driver driver, Path target) throws IOException {
+        ZipEntry entry = zipFile.getEntry(archiveEntryName(driver));
+        if (entry == null) {
+            throw new IOException(driver.getUrl() + " is not in bundle " + Utils.quote(file));
+        }
+        Files.createDirectories(target.getParent());
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    /**
+     * @return entry of the archive of the driver, unique per archive url and keeping its file name
+     */
+    static String archiveEntryName(Driver driver) {
+        String urlHash = FileHashes.toHex(FileHashes.newDigest().digest(archiveUrl(driver).getBytes(StandardCharsets.UTF_8)));
+        return ARCHIVES_DIRECTORY + urlHash.substring(0, 16) + "/" + driver.getFilenameFromUrl();
+    }
+
+    /**
+     * @return the url of the archive, Maven urls with their placeholders replaced
+     */
+    private static String archiveUrl(Driver driver) {
+        if (MavenArtifact.isMavenUrl(driver.getUrl())) {
+            try {
+                return MavenArtifact.URL_PREFIX + MavenArtifact.of(driver);
+            } catch (IllegalArgumentException e) {
+                // fails when installed
+                return driver.getUrl();
+            }
+        }
+        return driver.getUrl();
+    }
+
+    private static Path await(Future<Path> download, Driver driver) throws InstallWebDriversException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstallWebDriversException("Interrupted while prefetching " + driver.getId(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new InstallWebDriversException("Failed to prefetch " + driver.getId() + " cause of "
+                    + cause.getMessage(), cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    private static void write(Path bundleFile, List<Driver> drivers, Map<String, Path> archives) throws IOException {
+        Path absoluteBundleFile = bundleFile.toAbsolutePath();
+        Files.createDirectories(absoluteBundleFile.getParent());
+        Path tempFile = absoluteBundleFile.resolveSibling(absoluteBundleFile.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(tempFile))) {
+                JsonArray driversJson = new JsonArray();
+                for (Driver driver : drivers) {
+                    driversJson.add(GSON.toJsonTree(driver));
+                }
+                JsonObject repositoryJson = new JsonObject();
+                repositoryJson.add("drivers", driversJson);
+                out.putNextEntry(new ZipEntry(REPOSITORY_ENTRY));
+                out.write(GSON.toJson(repositoryJson).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+
+                // archives are compressed already, stored entries are read without inflating
+                for (Map.Entry<String, Path> archive : archives.entrySet()) {
+                    out.putNextEntry(storedEntry(archive.getKey(), archive.getValue()));
+                    Files.copy(archive.getValue(), out);
+                    out.closeEntry();
+                }
+            }
+            Files.move(tempFile, absoluteBundleFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("  Wrote " + archives.size() + " archives to " + Utils.quote(absoluteBundleFile));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static ZipEntry storedEntry(String name, Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(Files.size(file));
+        entry.setCompressedSize(Files.size(file));
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+
+    private static URL toUrl(String location) throws MalformedURLException {
+        try {
+            return new URL(location);
+        } catch (MalformedURLException e) {
+            return new File(location).toURI().toURL();
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Caching proxy for a LAN: serves the repository json with the driver urls
+ * rewritten to itself and the driver archives from the download directory,
+ * downloading missing archives from their original url once. Agents point
+ * their repository url at <code>http://&lt;host&gt;:&lt;port&gt;/repository.json</code>.
+ * <p>
+ * Concurrent requests for an archive that is not cached yet share one
+ * download, also with installations and other servers using the same download
+ * directory. Archives support conditional requests and single byte ranges,
+ * the repository json supports conditional requests.
+ * <p>
+ * Usage: {@code DriverCacheServer <port> [repository json file or url]}, the
+ * repository defaults to {@link InstallWebDrivers#UPSTREAM_REPOSITORY_URL}.
+ */
+public class DriverCacheServer {
+    private static final Logger logger = LoggerFactory.getLogger(DriverCacheServer.class);
+
+    public static final String REPOSITORY_PATH = "/repository.json";
+    public static final String DRIVERS_PATH = "/drivers/";
+    public static final long DEFAULT_REPOSITORY_REFRESH_INTERVAL = 5 * 60 * 1000; // 5 min
+    public static final int DEFAULT_THREADS = 32;
+
+    private static final String DOWNLOAD_COMPLETED_FILE = "download.completed";
+    private static final Gson GSON = new Gson();
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    private final InstallWebDrivers iwd;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, CompletableFuture<Path>> downloadsInFlight = new ConcurrentHashMap<>();
+    private final Object repositoryLock = new Object();
+    private volatile LoadedRepository repository;
+    private volatile long repositoryRefreshInterval = DEFAULT_REPOSITORY_REFRESH_INTERVAL;
+
+    /**
+     * Archives are cached in the download directory of the given instance and
+     * kept, also if the instance does not keep the downloads of its installations.
+     *
+     * @param iwd     configures the repositories and the download directory
+     * @param address address to listen on, port 0 picks a free port
+     */
+    public DriverCacheServer(InstallWebDrivers iwd, InetSocketAddress address) throws IOException {
+        this.iwd = iwd;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(DEFAULT_THREADS, Utils.daemonThreadFactory("webdrivers-installer-server"));
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    DriverCacheServer.this.handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: DriverCacheServer <port> [repository json file or url]");
+            System.exit(2);
+        }
+        InstallWebDrivers iwd = new InstallWebDrivers();
+        iwd.initiateConfig(toUrl(args.length == 2 ? args[1] : InstallWebDrivers.UPSTREAM_REPOSITORY_URL));
+        DriverCacheServer server = new DriverCacheServer(iwd, new InetSocketAddress(Integer.parseInt(args[0])));
+        server.start();
+        System.out.println("Serving " + Utils.quote(iwd.repositoryUrl) + " on port " + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Driver cache server listening on port " + getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @param repositoryRefreshInterval milliseconds the loaded repositories are served before they are loaded again
+     */
+    public void setRepositoryRefreshInterval(long repositoryRefreshInterval) {
+        if (repositoryRefreshInterval < 0) {
+            throw new IllegalArgumentException("repositoryRefreshInterval must not be negative: " + repositoryRefreshInterval);
+        }
+        this.repositoryRefreshInterval = repositoryRefreshInterval;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            sendError(exchange, 405, "Method not allowed");
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        try {
+            if (REPOSITORY_PATH.equals(path)) {
+                sendRepository(exchange, head);
+            } else if (path.startsWith(DRIVERS_PATH)) {
+                sendDriver(exchange, head, path.substring(DRIVERS_PATH.length()));
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (InstallWebDriversException e) {
+            logger.warn("  Failed to serve " + Utils.quote(path) + " cause of " + e.getMessage(), e);
+            // the message holds debug info of the local installation
+            sendError(exchange, 502, "Failed to load " + path + " from upstream");
+        } catch (RuntimeException e) {
+            logger.warn("  Failed to serve " + Utils.quote(path), e);
+            sendError(exchange, 500, String.valueOf(e));
+        }
+    }
+
+    private void sendRepository(HttpExchange exchange, boolean head) throws IOException, InstallWebDriversException {
+        String baseUrl = "http://" + host(exchange);
+        JsonArray drivers = new JsonArray();
+        for (Driver driver : loadRepository().drivers) {
+            JsonObject json = GSON.toJsonTree(driver).getAsJsonObject();
+            if (driver.getUrl() != null) {
+                json.addProperty("url", driverUrl(baseUrl, driver));
+            }
+            drivers.add(json);
+        }
+        JsonObject repositoryJson = new JsonObject();
+        repositoryJson.add("drivers", drivers);
+        byte[] body = GSON.toJson(repositoryJson).getBytes(StandardCharsets.UTF_8);
+
+        String etag = "\"" + FileHashes.toHex(FileHashes.newDigest().digest(body)).substring(0, 32) + "\"";
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        sendBody(exchange, head, 200, body);
+    }
+
+    private void sendDriver(HttpExchange exchange, boolean head, String driverPath) throws IOException, InstallWebDriversException {
+        int separator = driverPath.indexOf('/');
+        Driver driver = separator < 0 ? null : loadRepository().driversByKey.get(driverPath.substring(0, separator));
+        if (driver == null || driver.getUrl() == null
+                || !driver.getFilenameFromUrl().equals(driverPath.substring(separator + 1))) {
+            sendError(exchange, 404, "Unknown driver " + driverPath);
+            return;
+        }
+
+        Path file = cachedFile(driver);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // collected meanwhile
+            channel = FileChannel.open(cachedFile(driver), StandardOpenOption.READ);
+        }
+        try {
+            sendFile(exchange, head, file, channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void sendFile(HttpExchange exchange, boolean head, Path file, FileChannel channel) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = channel.size();
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        String lastModifiedDate = HTTP_DATE.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC));
+
+        Headers requestHeaders = exchange.getRequestHeaders();
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Last-Modified", lastModifiedDate);
+        headers.set("Accept-Ranges", "bytes");
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null ? matches(ifNoneMatch, etag)
+                : notModifiedSince(requestHeaders.getFirst("If-Modified-Since"), lastModified)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        headers.set("Content-Type", "application/octet-stream");
+        long start = 0;
+        long length = size;
+        int status = 200;
+        String range = requestHeaders.getFirst("Range");
+        String ifRange = requestHeaders.getFirst("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag) || ifRange.equals(lastModifiedDate))) {
+            long[] byteRange = parseRange(range, size);
+            if (byteRange == UNSATISFIABLE_RANGE) {
+                headers.set("Content-Range", "bytes */" + size);
+                sendError(exchange, 416, "Range not satisfiable");
+                return;
+            } else if (byteRange != null) {
+                start = byteRange[0];
+                length = byteRange[1] - byteRange[0] + 1;
+                status = 206;
+                headers.set("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + size);
+            }
+        }
+
+        if (head || length == 0) {
+            headers.set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of " + Utils.quote(file));
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * @return the archive in the download directory, downloaded first if it is not cached
+     */
+    private Path cachedFile(Driver driver) throws InstallWebDriversException, IOException {
+        String key = driver.getDriverDownloadDirectoryName();
+        Path downloadPath = iwd.downloadDirectory.resolve(key);
+        Path cachedFile = downloadPath.resolve(driver.getFilenameFromUrl());
+        if (Files.exists(downloadPath.resolve(DOWNLOAD_COMPLETED_FILE)) && Files.exists(cachedFile)) {
+            return cachedFile;
+        }
+
+        CompletableFuture<Path> download = new CompletableFuture<>();
+        CompletableFuture<Path> runningDownload = downloadsInFlight.putIfAbsent(key, download);
+        if (runningDownload != null) {
+            return awaitDownload(runningDownload, driver);
+        }
+        try (WorkDirectories.WorkDirectory workDirectory = WorkDirectories.create(iwd.tempDirectory)) {
+            Path downloadedFile = iwd.download(new DriverDownloader(iwd, Long.MAX_VALUE, true), driver, workDirectory.getPath());
+            if (!downloadedFile.equals(cachedFile)) {
+                throw new InstallWebDriversException("Failed to cache " + driver.getId() + " in " + Utils.quote(downloadPath));
+            }
+            download.complete(cachedFile);
+            return cachedFile;
+        } catch (InstallWebDriversException | IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloadsInFlight.remove(key, download);
+        }
+    }
+
+    private static Path awaitDownload(CompletableFuture<Path> download, Driver driver)
+            throws InstallWebDriversException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstallWebDriversException("Interrupted while waiting for download of " + driver.getId(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new InstallWebDriversException("Concurrent download of " + driver.getId() + " failed cause of "
+                    + cause.getMessage(), cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    /**
+     * Loads the repositories again once the refresh interval passed, keeps
+     * serving the loaded ones if that fails.
+     */
+    private LoadedRepository loadRepository() throws InstallWebDriversException {
+        LoadedRepository loaded = repository;
+        if (loaded != null && System.currentTimeMillis() - loaded.loadedAt < repositoryRefreshInterval) {
+            return loaded;
+        }
+        synchronized (repositoryLock) {
+            loaded = repository;
+            if (loaded != null && System.currentTimeMillis() - loaded.loadedAt < repositoryRefreshInterval) {
+                return loaded;
+            }
+            try {
+                repository = new LoadedRepository(new Repository().load(iwd.repositorySources()).getDrivers());
+            } catch (InstallWebDriversException | RuntimeException e) {
+                if (loaded == null) {
+                    throw e;
+                }
+                logger.warn("  Failed to reload repositories, serving the loaded ones cause of " + e.getMessage());
+                repository = new LoadedRepository(loaded.drivers);
+            }
+            return repository;
+        }
+    }
+
+    private static String driverUrl(String baseUrl, Driver driver) {
+        try {
+            URI base = new URI(baseUrl);
+            return new URI(base.getScheme(), base.getAuthority(), DRIVERS_PATH + driver.getDriverDownloadDirectoryName()
+                    + "/" + driver.getFilenameFromUrl(), null, null).toASCIIString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid host in " + baseUrl, e);
+        }
+    }
+
+    private static String host(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host != null && !host.isEmpty()) {
+            return host;
+        }
+        InetSocketAddress address = exchange.getLocalAddress();
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * @return the first and last byte of a single byte range, {@link #UNSATISFIABLE_RANGE}
+     * if it starts after the end of the file or null if the whole file is sent,
+     * e.g. for several or invalid ranges
+     */
+    static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength == 0 || size == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                return new long[]{Math.max(0, size - suffixLength), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= size) {
+                return UNSATISFIABLE_RANGE;
+            }
+            return new long[]{start, Math.min(end, size - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean notModifiedSince(String ifModifiedSince, long lastModified) {
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        try {
+            return lastModified <= ZonedDateTime.parse(ifModifiedSince, HTTP_DATE).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        sendBody(exchange, "HEAD".equals(exchange.getRequestMethod()), status,
+                (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendBody(HttpExchange exchange, boolean head, int status, byte[] body) throws IOException {
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static URL toUrl(String location) throws MalformedURLException {
+        try {
+            return new URL(location);
+        } catch (MalformedURLException e) {
+            return new File(location).toURI().toURL();
+        }
+    }
+
+    private static final class LoadedRepository {
+        private final List<Driver> drivers;
+        private final Map<String, Driver> driversByKey;
+        private final long loadedAt = System.currentTimeMillis();
+
+        LoadedRepository(List<Driver> drivers) {
+            this.drivers = Collections.unmodifiableList(drivers);
+            Map<String, Driver> driversByKey = new HashMap<>();
+            for (Driver driver : drivers) {
+                if (!driversByKey.containsKey(driver.getDriverDownloadDirectoryName())) {
+                    driversByKey.put(driver.getDriverDownloadDirectoryName(), driver);
+                }
+            }
+            this.driversByKey = driversByKey;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.sss.testing.utils.webdriversinstaller;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
@@ -11,13 +10,17 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
 import static com.sss.testing.utils.webdriversinstaller.Utils.quote;
@@ -30,47 +33,274 @@ public class DriverDownloader {
     public static final int FILE_DOWNLOAD_READ_TIMEOUT = 30 * 60 * 1000; // 30 min
     public static final int FILE_DOWNLOAD_CONNECT_TIMEOUT = 30 * 1000; // 30 seconds
     public static final int FILE_DOWNLOAD_RETRY_ATTEMPTS = 3;
+    static final String DOWNLOAD_DIRECTORY_NAME = "download";
     private final InstallWebDrivers iwd;
+    /**
+     * Bandwidth a download may take, {@link Long#MAX_VALUE} for no limit.
+     */
+    private final long maxBytesPerSecond;
+    /**
+     * Keeps downloads also if the instance does not, e.g. for prefetching.
+     */
+    private final boolean keepDownloads;
+    private InstallMetrics.CacheOutcome cacheOutcome = InstallMetrics.CacheOutcome.MISS;
+    private int retries;
 
     public DriverDownloader(InstallWebDrivers iwd) throws InstallWebDriversException {
+        this(iwd, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * @param keepDownloads publish downloads to the download directory even if
+     *                      {@link InstallWebDrivers#setKeepDownloadedWebdrivers(boolean)} is off
+     */
+    DriverDownloader(InstallWebDrivers iwd, long maxBytesPerSecond, boolean keepDownloads) {
         this.iwd = iwd;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.keepDownloads = keepDownloads;
     }
 
-    public Path downloadFile(Driver driver, Path downloadDirectory) throws InstallWebDriversException {
-        String url = driver.getUrl();
-        Path downloadFilePath = downloadDirectory.resolve(driver.getFilenameFromUrl());
+    /**
+     * Downloads the driver into the working directory of the installation. Kept
+     * downloads are published to the download directory afterwards and used from
+     * there by later installations.
+     *
+     * @param downloadDirectory cache directory of this driver version
+     * @param workDirectory     working directory of this installation
+     * @return the downloaded file
+     */
+    public Path downloadFile(Driver driver, Path downloadDirectory, Path workDirectory) throws InstallWebDriversException {
+        cacheOutcome = InstallMetrics.CacheOutcome.MISS;
+        retries = 0;
+        Path cachedFilePath = cachedFile(driver, downloadDirectory);
+        if (cachedFilePath != null) {
+            // also without keeping downloads, e.g. prefetched by a DriverPrefetchScheduler
+            logger.info("  Using cached driver from " + quote(cachedFilePath));
+            cacheOutcome = InstallMetrics.CacheOutcome.HIT;
+            return cachedFilePath;
+        }
+        return publish(driver, downloadDirectory, fetchFile(driver, workDirectory));
+    }
 
-        if (downloadFilePath.toFile().exists() && !downloadCompletedFileExists(downloadDirectory)) {
-            logger.info("  Removing downloaded driver " + quote(downloadFilePath) + " since it may be corrupt");
-            cleanupDriverDownloadDirectory(downloadDirectory);
-        } else if (!iwd.keepDownloadedWebdrivers) {
+    /**
+     * @param downloadDirectory cache directory of this driver version
+     * @return the completely downloaded file in the download directory, null
+     * if there is none, an incomplete download directory is removed
+     */
+    Path cachedFile(Driver driver, Path downloadDirectory) throws InstallWebDriversException {
+        Path cachedFilePath = downloadDirectory.resolve(driver.getFilenameFromUrl());
+        if (downloadCompletedFileExists(downloadDirectory) && cachedFilePath.toFile().exists()) {
+            return cachedFilePath;
+        } else if (downloadDirectory.toFile().exists()) {
+            logger.info("  Removing downloaded driver " + quote(downloadDirectory) + " since it may be corrupt");
             cleanupDriverDownloadDirectory(downloadDirectory);
         }
+        return null;
+    }
 
-        if (downloadFilePath.toFile().exists()) {
-            logger.info("  Using cached driver from " + quote(downloadFilePath));
+    /**
+     * Downloads the driver into the working directory of the installation
+     * without looking at the download directory, so it needs no lock of it.
+     *
+     * @return the downloaded file
+     */
+    Path fetchFile(Driver driver, Path workDirectory) throws InstallWebDriversException {
+        String url = driver.getUrl();
+        cacheOutcome = InstallMetrics.CacheOutcome.MISS;
+        retries = 0;
+        Path downloadFilePath = workDirectory.resolve(DOWNLOAD_DIRECTORY_NAME).resolve(driver.getFilenameFromUrl());
+        DriverBundle bundle = iwd.bundle;
+        if (bundle != null && bundle.contains(driver)) {
+            cacheOutcome = InstallMetrics.CacheOutcome.HIT;
+            logger.info("  Copying " + quote(url) + " from bundle " + quote(bundle.getFile()) + " to " + quote(downloadFilePath));
+            try {
+                bundle.copyArchive(driver, downloadFilePath);
+            } catch (IOException e) {
+                throw new InstallWebDriversException("Failed to copy driver from bundle " + quote(bundle.getFile())
+                        + " to " + quote(downloadFilePath) + " cause of " + e, e, iwd, driver);
+            }
+        } else if (MavenArtifact.isMavenUrl(url)) {
+            downloadArtifact(driver, downloadFilePath);
         } else {
-            logger.info("  Downloading " + quote(url) + " to " + quote(downloadFilePath));
-            HttpClientBuilder httpClientBuilder = prepareHttpClientBuilderWithTimeouts();
-            httpClientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(FILE_DOWNLOAD_RETRY_ATTEMPTS, true));
-            try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
-                try (CloseableHttpResponse fileDownloadResponse = httpClient.execute(new HttpGet(url))) {
-                    HttpEntity remoteFileStream = fileDownloadResponse.getEntity();
-                    copyInputStreamToFile(remoteFileStream.getContent(), downloadFilePath.toFile());
-                    if (driverFileIsCorrupt(downloadFilePath)) {
-                        printXmlFileContetIfPresentInDonwloadedFile(downloadFilePath);
-                        cleanupDriverDownloadDirectory(downloadDirectory);
-                        throw new InstallWebDriversException("Failed to download a non corrupt driver", iwd, driver);
-                    }
+            download(driver.getUrl(), downloadFilePath, driver);
+        }
+        if (isCorrupt(driver, downloadFilePath)) {
+            printXmlFileContetIfPresentInDonwloadedFile(downloadFilePath);
+            throw new InstallWebDriversException("Failed to download a non corrupt driver", iwd, driver);
+        }
+        return downloadFilePath;
+    }
+
+    /**
+     * Moves a file downloaded by {@link #fetchFile(Driver, Path)} to the
+     * download directory if downloads are kept. Needs the lock of the download
+     * directory.
+     *
+     * @param downloadDirectory cache directory of this driver version, must not exist
+     * @return the file to install from, in the download directory if it could be published
+     */
+    Path publish(Driver driver, Path downloadDirectory, Path downloadFilePath) throws InstallWebDriversException {
+        if (!keepDownloads && !iwd.keepDownloadedWebdrivers) {
+            return downloadFilePath;
+        }
+        createDownloadCompletedFile(downloadFilePath.getParent());
+        try {
+            Files.createDirectories(downloadDirectory.getParent());
+            Files.move(downloadFilePath.getParent(), downloadDirectory, StandardCopyOption.ATOMIC_MOVE);
+            return downloadDirectory.resolve(driver.getFilenameFromUrl());
+        } catch (IOException e) {
+            // e.g. published by a concurrent installation meanwhile, install from the work directory
+            logger.info("  Failed to cache downloaded driver in " + quote(downloadDirectory) + " cause of " + e);
+            return downloadFilePath;
+        }
+    }
+
+    /**
+     * Copies the artifact from the local Maven repository if it is there and
+     * intact, otherwise downloads it from the first remote repository having it
+     * and stores it in the local repository.
+     */
+    private void downloadArtifact(Driver driver, Path downloadFilePath) throws InstallWebDriversException {
+        MavenArtifact artifact;
+        try {
+            artifact = MavenArtifact.of(driver);
+        } catch (IllegalArgumentException e) {
+            throw new InstallWebDriversException(e.getMessage(), e, iwd, driver);
+        }
+        Path localFile = artifact.localFile(iwd.mavenLocalRepository);
+        try {
+            if (MavenArtifact.isVerified(localFile)) {
+                logger.info("  Copying " + artifact + " from local repository " + quote(localFile));
+                Files.createDirectories(downloadFilePath.getParent());
+                Files.copy(localFile, downloadFilePath, StandardCopyOption.REPLACE_EXISTING);
+                cacheOutcome = InstallMetrics.CacheOutcome.REVALIDATED;
+                return;
+            }
+        } catch (IOException e) {
+            logger.info("  Ignoring " + quote(localFile) + " cause of " + e);
+        }
+
+        InstallWebDriversException lastFailure = null;
+        for (URL repository : iwd.mavenRepositories()) {
+            String url = artifact.remoteUrl(repository);
+            try {
+                download(url, downloadFilePath, driver);
+                String checksum = downloadChecksum(url, downloadFilePath);
+                String actualChecksum = checksum != null ? MavenArtifact.sha1(downloadFilePath) : null;
+                if (checksum != null && !checksum.equals(actualChecksum)) {
+                    String failure = "Checksum of " + quote(url) + " is " + actualChecksum + " instead of " + checksum;
+                    // logged without the directory listing of the message, the next repository may have it
+                    logger.info("  " + failure);
+                    lastFailure = new InstallWebDriversException(failure, iwd, driver);
+                    continue;
+                }
+                if (checksum == null) {
+                    logger.warn("  Installing " + artifact + " from " + quote(url) + " unverified, the repository has no checksum for it");
+                }
+                try {
+                    MavenArtifact.store(downloadFilePath, localFile, checksum);
+                } catch (IOException e) {
+                    // e.g. a read only local repository, installing works without
+                    logger.info("  Failed to store " + artifact + " in local repository cause of " + e);
                 }
+                return;
             } catch (InstallWebDriversException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new InstallWebDriversException("Failed to download driver from " + quote(url) + " to " + quote(downloadFilePath) + " cause of " + e.getCause(), e, iwd, driver);
+                lastFailure = e;
+            } catch (IOException e) {
+                lastFailure = new InstallWebDriversException("Failed to verify " + quote(downloadFilePath)
+                        + " cause of " + e, e, iwd, driver);
             }
-            createDownloadCompletedFile(downloadDirectory);
         }
-        return downloadFilePath;
+        throw lastFailure;
+    }
+
+    /**
+     * @return the published checksum of the artifact at the url or null if there is none
+     */
+    private String downloadChecksum(String url, Path downloadFilePath) throws IOException {
+        Path checksumFile = downloadFilePath.resolveSibling(downloadFilePath.getFileName() + MavenArtifact.CHECKSUM_EXTENSION);
+        try {
+            fetch(url + MavenArtifact.CHECKSUM_EXTENSION, checksumFile);
+            return MavenArtifact.readChecksum(checksumFile);
+        } catch (IOException e) {
+            logger.info("  No checksum for " + quote(url) + " cause of " + e);
+            return null;
+        } finally {
+            Files.deleteIfExists(checksumFile);
+        }
+    }
+
+    private void download(String url, Path downloadFilePath, Driver driver) throws InstallWebDriversException {
+        logger.info("  Downloading " + quote(url) + " to " + quote(downloadFilePath));
+        try {
+            fetch(url, downloadFilePath);
+        } catch (Exception e) {
+            throw new InstallWebDriversException("Failed to download driver from " + quote(url) + " to " + quote(downloadFilePath) + " cause of " + e, e, iwd, driver);
+        }
+    }
+
+    private void fetch(String url, Path downloadFilePath) throws IOException {
+        HttpClientBuilder httpClientBuilder = prepareHttpClientBuilderWithTimeouts();
+        httpClientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(FILE_DOWNLOAD_RETRY_ATTEMPTS, true) {
+            @Override
+            public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+                boolean retry = super.retryRequest(exception, executionCount, context);
+                if (retry) {
+                    retries++;
+                }
+                return retry;
+            }
+        });
+        try (CloseableHttpClient httpClient = httpClientBuilder.build();
+             CloseableHttpResponse fileDownloadResponse = httpClient.execute(new HttpGet(url))) {
+            if (fileDownloadResponse.getStatusLine().getStatusCode() >= 300) {
+                // do not cache an error page as the driver
+                throw new IOException("HTTP status " + fileDownloadResponse.getStatusLine());
+            }
+            HttpEntity remoteFileStream = fileDownloadResponse.getEntity();
+            InputStream content = remoteFileStream.getContent();
+            if (maxBytesPerSecond != Long.MAX_VALUE) {
+                content = new ThrottledInputStream(content, maxBytesPerSecond);
+            }
+            copyInputStreamToFile(content, downloadFilePath.toFile());
+        }
+    }
+
+    /**
+     * @return true if the last {@link #downloadFile(Driver, Path, Path)} took the
+     * driver from the download directory, a bundle or the local Maven repository
+     */
+    boolean wasCacheHit() {
+        return cacheOutcome != InstallMetrics.CacheOutcome.MISS;
+    }
+
+    /**
+     * @return where the last {@link #downloadFile(Driver, Path, Path)} took the driver from
+     */
+    InstallMetrics.CacheOutcome getCacheOutcome() {
+        return cacheOutcome;
+    }
+
+    /**
+     * @return requests the last {@link #downloadFile(Driver, Path, Path)} retried
+     */
+    int getRetries() {
+        return retries;
+    }
+
+    private boolean isCorrupt(Driver driver, Path downloadFilePath) {
+        InstallMetrics.StageRecorder validateStage = iwd.metrics.start(InstallResult.STAGE_VALIDATE, driver.getId());
+        validateStage.url(driver.getUrl());
+        boolean corrupt = true;
+        try {
+            validateStage.addBytes(Files.size(downloadFilePath));
+            corrupt = driverFileIsCorrupt(downloadFilePath);
+            return corrupt;
+        } catch (IOException e) {
+            return true;
+        } finally {
+            validateStage.end(!corrupt);
+        }
     }
 
     private void printXmlFileContetIfPresentInDonwloadedFile(Path downloadFilePath) {
@@ -113,9 +343,12 @@ public class DriverDownloader {
         }
     }
 
+    /**
+     * Renames the download directory away and deletes it in the background.
+     */
     public void cleanupDriverDownloadDirectory(Path downloadDirectory) throws InstallWebDriversException {
         try {
-            FileUtils.deleteDirectory(downloadDirectory.toFile());
+            WorkDirectories.deleteInBackground(downloadDirectory);
         } catch (IOException e) {
             throw new InstallWebDriversException("Failed to delete driver cache directory:" + System.lineSeparator()
                     + Utils.directoryToString(downloadDirectory), e);
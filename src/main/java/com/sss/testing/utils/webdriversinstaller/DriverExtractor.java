@@ -1,5 +1,6 @@
 package com.sss.testing.utils.webdriversinstaller;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.sss.testing.utils.webdriversinstaller.newversion.FileExtractor;
@@ -16,23 +17,31 @@ class DriverExtractor {
         this.iwd = iwd;
     }
 
+    /**
+     * Extracts the driver into a new staging directory next to the installation
+     * directory, {@link DriverInstaller#install(Driver, Path)} renames it into
+     * place and removes the staging directory.
+     *
+     * @return the staging directory
+     */
     Path extractDriver(Driver driver, Path downloadedFile) throws InstallWebDriversException {
         FileExtractor fileExtractor = new FileExtractorImpl(driver.getFileMatchInside());
 
+        Path stagingDirectory = null;
         try {
+            stagingDirectory = DriverInstaller.createStagingDirectory(iwd.installationDirectory.toPath(), driver);
             if (fileExtractor.isExtractable(downloadedFile)) {
-                logger.info("  Extracting " + Utils.quote(downloadedFile) + " to temp folder");
-                fileExtractor.extractFile(downloadedFile, iwd.tempDirectory);
+                logger.info("  Extracting " + Utils.quote(downloadedFile) + " to " + Utils.quote(stagingDirectory));
+                fileExtractor.extractFile(downloadedFile, stagingDirectory);
             } else {
-                logger.info("  Copying " + Utils.quote(downloadedFile) + " to temp folder");
-                Files.createDirectories(iwd.tempDirectory);
-                Files.copy(downloadedFile, iwd.tempDirectory.resolve(downloadedFile.getFileName()));
+                logger.info("  Copying " + Utils.quote(downloadedFile) + " to " + Utils.quote(stagingDirectory));
+                Files.copy(downloadedFile, stagingDirectory.resolve(downloadedFile.getFileName()));
             }
-            if (!iwd.keepDownloadedWebdrivers) {
-                Files.delete(downloadedFile);
-            }
-            return iwd.tempDirectory;
+            return stagingDirectory;
         } catch (Exception e) {
+            if (stagingDirectory != null) {
+                FileUtils.deleteQuietly(stagingDirectory.toFile());
+            }
             throw new InstallWebDriversException("Failed to extract driver from " +
                     Utils.quote(downloadedFile) + " cause of " + e.getMessage(), e, iwd, driver);
         }
@@ -0,0 +1,308 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes driver versions according to a {@link GarbageCollectionPolicy},
+ * leftovers of crashed installations, stale version files and cached
+ * downloads. Nothing in use is removed: versions of a driver id only while its
+ * installation lock is free, staging and trash directories only while no
+ * installation runs in the installation directory, downloads only while their
+ * download lock is free (see {@link InstallationLocks}) and working directories
+ * only while their lock is free (see {@link WorkDirectories}). What is in use is
+ * skipped and collected by a later run.
+ */
+class DriverGarbageCollector {
+    private static final Logger logger = LoggerFactory.getLogger(DriverGarbageCollector.class);
+
+    private static final String VERSION_FILE_EXTENSION = ".version";
+    private static final String DOWNLOAD_COMPLETED_FILE = "download.completed";
+
+    private static final Comparator<InstalledDriver> BY_VERSION = new Comparator<InstalledDriver>() {
+        @Override
+        public int compare(InstalledDriver left, InstalledDriver right) {
+            return new ComparableVersion(left.getDriver().getVersion())
+                    .compareTo(new ComparableVersion(right.getDriver().getVersion()));
+        }
+    };
+
+    private final InstallWebDrivers iwd;
+    private final Path installationDirectory;
+    private final InstallationManifest manifest;
+
+    DriverGarbageCollector(InstallWebDrivers iwd) {
+        this.iwd = iwd;
+        this.installationDirectory = iwd.installationDirectory.toPath().toAbsolutePath().normalize();
+        this.manifest = InstallationManifest.forDirectory(installationDirectory);
+    }
+
+    GarbageCollectionReport collect(GarbageCollectionPolicy policy) throws IOException {
+        logger.info("Collecting garbage in " + Utils.quote(installationDirectory) + " with " + policy);
+        GarbageCollectionReport report = new GarbageCollectionReport();
+        if (Files.isDirectory(installationDirectory)) {
+            collectLeftovers(report);
+            collectVersions(policy, report);
+        }
+        collectDownloads(policy, report);
+        collectTemp(report);
+        logger.info("  Garbage collection " + report);
+        return report;
+    }
+
+    /**
+     * Removes the staging, trash and link directories of crashed installations
+     * and version directories missing in the manifest.
+     */
+    private void collectLeftovers(GarbageCollectionReport report) throws IOException {
+        try (Closeable directoryLock = InstallationLocks.tryLockDirectory(installationDirectory)) {
+            if (directoryLock == null) {
+                report.skipped("leftovers in " + installationDirectory + " since an installation is running");
+                return;
+            }
+            for (Path path : list(installationDirectory)) {
+                if (isLeftover(path) || isManifestTempFile(path)) {
+                    delete(path, report);
+                }
+            }
+            Path versionsDirectory = installationDirectory.resolve(DriverInstaller.VERSIONS_DIRECTORY);
+            Set<String> recordedVersions = new HashSet<>();
+            for (InstalledDriver installed : manifest.getInstalledDrivers()) {
+                recordedVersions.add(InstallationManifest.versionKey(installed.getDriver()));
+            }
+            for (Path path : list(versionsDirectory)) {
+                if (isLeftover(path) || !WorkDirectories.isPendingDeletion(path)
+                        && !recordedVersions.contains(path.getFileName().toString())) {
+                    delete(path, report);
+                }
+            }
+        }
+    }
+
+    private void collectVersions(GarbageCollectionPolicy policy, GarbageCollectionReport report) throws IOException {
+        Map<String, List<InstalledDriver>> versionsById = new LinkedHashMap<>();
+        for (InstalledDriver installed : manifest.getInstalledDrivers()) {
+            String id = installed.getDriver().getId();
+            if (!versionsById.containsKey(id)) {
+                versionsById.put(id, new ArrayList<InstalledDriver>());
+            }
+            versionsById.get(id).add(installed);
+        }
+        for (Path path : list(installationDirectory)) {
+            String fileName = path.getFileName().toString();
+            if (fileName.endsWith(VERSION_FILE_EXTENSION) && Files.isRegularFile(path)) {
+                String id = fileName.substring(0, fileName.length() - VERSION_FILE_EXTENSION.length());
+                if (!versionsById.containsKey(id)) {
+                    versionsById.put(id, new ArrayList<InstalledDriver>());
+                }
+            }
+        }
+
+        List<Closeable> driverLocks = new ArrayList<>();
+        try {
+            long now = System.currentTimeMillis();
+            List<InstalledDriver> removable = new ArrayList<>();
+            long totalSize = 0;
+            for (Map.Entry<String, List<InstalledDriver>> versions : versionsById.entrySet()) {
+                String id = versions.getKey();
+                Closeable driverLock = InstallationLocks.tryLockDriver(installationDirectory, id);
+                if (driverLock == null) {
+                    report.skipped(id + " since it is being installed");
+                    for (InstalledDriver installed : versions.getValue()) {
+                        totalSize += size(installed);
+                    }
+                    continue;
+                }
+                driverLocks.add(driverLock);
+                removeStaleVersionFile(id, report);
+
+                InstalledDriver current = manifest.getCurrentDriver(id);
+                List<InstalledDriver> byVersion = new ArrayList<>(versions.getValue());
+                Collections.sort(byVersion, Collections.reverseOrder(BY_VERSION));
+                for (int i = 0; i < byVersion.size(); i++) {
+                    InstalledDriver installed = byVersion.get(i);
+                    boolean isCurrent = current != null && current.getDriver().equals(installed.getDriver());
+                    if (!isCurrent && (i >= policy.getKeepLatestVersions()
+                            || now - installed.getInstalledAt() > policy.getMaxAge())) {
+                        remove(installed, report);
+                    } else {
+                        totalSize += size(installed);
+                        if (!isCurrent) {
+                            removable.add(installed);
+                        }
+                    }
+                }
+            }
+
+            // least recently installed first
+            Collections.sort(removable, new Comparator<InstalledDriver>() {
+                @Override
+                public int compare(InstalledDriver left, InstalledDriver right) {
+                    return Long.compare(left.getInstalledAt(), right.getInstalledAt());
+                }
+            });
+            for (InstalledDriver installed : removable) {
+                if (totalSize <= policy.getMaxTotalSize()) {
+                    break;
+                }
+                totalSize -= size(installed);
+                remove(installed, report);
+            }
+            if (totalSize > policy.getMaxTotalSize()) {
+                report.skipped("size budget since current or locked versions take " + totalSize + " bytes");
+            }
+        } finally {
+            for (Closeable driverLock : driverLocks) {
+                driverLock.close();
+            }
+        }
+    }
+
+    private void remove(InstalledDriver installed, GarbageCollectionReport report) throws IOException {
+        Driver driver = installed.getDriver().toDriver();
+        logger.info("  Removing " + driver.getId() + " version " + driver.getVersion());
+        // forget the version first, a crash leaves an orphan directory and no entry without files
+        manifest.remove(InstallationManifest.versionKey(driver));
+        delete(DriverInstaller.versionDirectory(installationDirectory, driver), report);
+    }
+
+    /**
+     * Removes the version file of an in-place installation once the driver was
+     * adopted into a versioned directory or is gone. Must hold the driver lock.
+     */
+    private void removeStaleVersionFile(String id, GarbageCollectionReport report) throws IOException {
+        Path versionFile = installationDirectory.resolve(id + VERSION_FILE_EXTENSION);
+        if (!Files.isRegularFile(versionFile)) {
+            return;
+        }
+        for (Path stablePath : new Path[]{installationDirectory.resolve(id), installationDirectory.resolve(id + ".exe")}) {
+            if (Files.exists(stablePath, LinkOption.NOFOLLOW_LINKS) && !Files.isSymbolicLink(stablePath)
+                    && manifest.getCurrentDriver(id) == null) {
+                // still installed in place
+                return;
+            }
+        }
+        delete(versionFile, report);
+    }
+
+    /**
+     * Removes incomplete downloads and cached downloads older than the max age.
+     * Whether this instance keeps its downloads does not matter, the download
+     * directory is shared with other instances, prefetchers and cache servers.
+     */
+    private void collectDownloads(GarbageCollectionPolicy policy, GarbageCollectionReport report) throws IOException {
+        Path downloadDirectory = iwd.downloadDirectory;
+        long now = System.currentTimeMillis();
+        for (Path path : list(downloadDirectory)) {
+            String name = path.getFileName().toString();
+            if (name.equals(InstallationLocks.LOCKS_DIRECTORY) || !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                continue;
+            }
+            try (Closeable downloadLock = InstallationLocks.tryLockFile(
+                    InstallationLocks.locksDirectory(downloadDirectory).resolve(name + ".lock"))) {
+                if (downloadLock == null) {
+                    report.skipped("download " + name + " since it is in use");
+                    continue;
+                }
+                Path completed = path.resolve(DOWNLOAD_COMPLETED_FILE);
+                if (!Files.exists(completed)
+                        || now - Files.getLastModifiedTime(completed).toMillis() > policy.getMaxAge()) {
+                    delete(path, report);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes working directories of crashed installations, see {@link WorkDirectories#orphans(Path)}.
+     */
+    private void collectTemp(GarbageCollectionReport report) throws IOException {
+        for (Path orphan : WorkDirectories.orphans(iwd.tempDirectory)) {
+            delete(orphan, report);
+        }
+    }
+
+    private static boolean isLeftover(Path path) {
+        String name = path.getFileName().toString();
+        return !WorkDirectories.isPendingDeletion(path)
+                && (name.startsWith(DriverInstaller.STAGING_DIRECTORY_PREFIX)
+                || name.startsWith(DriverInstaller.TRASH_PREFIX)
+                || name.startsWith(DriverInstaller.LINK_PREFIX));
+    }
+
+    private static boolean isManifestTempFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(InstallationManifest.MANIFEST_FILE_NAME) && name.endsWith(".tmp");
+    }
+
+    private static long size(InstalledDriver installed) {
+        long size = 0;
+        for (InstalledDriver.InstalledFile file : installed.getFiles()) {
+            size += file.getSize();
+        }
+        return size;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                paths.add(child);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Deletes a file or directory without following links and reports the bytes
+     * of the deleted files.
+     */
+    private static void delete(Path path, GarbageCollectionReport report) throws IOException {
+        final long[] bytes = {0};
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    bytes[0] += attributes.isSymbolicLink() ? 0 : attributes.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // removed meanwhile
+        }
+        logger.info("  Removed " + Utils.quote(path));
+        report.removed(path, bytes[0]);
+    }
+}
@@ -1,100 +1,276 @@
 package com.sss.testing.utils.webdriversinstaller;
 
-import org.codehaus.plexus.util.FileUtils;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
 
 public class DriverInstaller {
     private static final Logger logger = LoggerFactory.getLogger(DriverInstaller.class);
+
+    static final String STAGING_DIRECTORY_PREFIX = ".staging-";
+    static final String TRASH_PREFIX = ".trash-";
+    static final String LINK_PREFIX = ".link-";
+    static final String VERSIONS_DIRECTORY = "versions";
+
     private final InstallWebDrivers iwd;
     private final DriverVersionHandler versionHandler;
+    private final InstallationManifest manifest;
 
     public DriverInstaller(InstallWebDrivers iwd) {
         this.iwd = iwd;
         this.versionHandler = new DriverVersionHandler(iwd.installationDirectory.toPath());
+        this.manifest = InstallationManifest.forDirectory(iwd.installationDirectory.toPath());
     }
 
+    /**
+     * An installed and intact version of the driver needs no installation, it is
+     * made the current version if it is not.
+     */
     public boolean needInstallation(Driver driver) throws InstallWebDriversException {
-        return !isInstalled(driver) || !versionHandler.isSameVersion(driver);
+        try {
+            if (manifest.isInstalled(driver, iwd.cacheHashesInExtendedAttributes)) {
+                InstalledDriver installed = manifest.getInstalledDriver(driver);
+                Path versionedPath = iwd.installationDirectory.toPath().resolve(installed.getPath());
+                if (!isCurrent(driver, versionedPath)) {
+                    logger.info("  Switching to installed version " + driver.getVersion());
+                    activate(driver, versionedPath);
+                }
+                return false;
+            }
+            if (manifest.contains(driver)) {
+                return true;
+            }
+            // installed in place before versioned installations, adopt it if the version file matches
+            Path stablePath = iwd.installationDirectory.toPath().resolve(driver.getFileName());
+            if (Files.exists(stablePath, LinkOption.NOFOLLOW_LINKS) && !Files.isSymbolicLink(stablePath)
+                    && versionHandler.isSameVersion(driver)) {
+                adopt(driver, stablePath);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new InstallWebDriversException("Failed to read installation manifest" + Utils.debugInfo(driver), e);
+        }
     }
 
+    /**
+     * Publishes the extracted driver from its staging directory, which must be on
+     * the same file system as the installation directory (see
+     * {@link DriverExtractor}), into the versioned directory
+     * <code>versions/&lt;id&gt;-&lt;version&gt;</code> and makes it the current
+     * version. The versioned directory is renamed into place atomically and the
+     * stable path is switched atomically, so a process starting the driver sees
+     * either the old or the new driver and never a partially written one. Other
+     * installed versions stay untouched. The staging directory is removed
+     * afterwards.
+     */
     public void install(Driver driver, Path extractLocation) throws InstallWebDriversException {
-        if (extractLocation.toFile().isDirectory() && directoryIsEmpty(extractLocation)) {
-            throw new InstallWebDriversException("Failed to install driver since no files found to install", iwd, driver);
-        }
-
+        Path versionStagingDirectory = null;
         try {
-            Files.createDirectories(iwd.installationDirectory.toPath());
+            if (extractLocation.toFile().isDirectory() && directoryIsEmpty(extractLocation)) {
+                throw new InstallWebDriversException("Failed to install driver since no files found to install", iwd, driver);
+            }
+
+            Path installationDirectory = iwd.installationDirectory.toPath();
+            Path versionDirectory = versionDirectory(installationDirectory, driver);
+            Files.createDirectories(versionDirectory.getParent());
+            Path versionedPath;
             if (directoryContainsSingleDirectory(extractLocation)) {
                 Path singleDirectory = extractLocation.toFile().listFiles()[0].toPath();
-                moveAllFilesInDirectory(singleDirectory, iwd.installationDirectory.toPath().resolve(driver.getId()));
+                publishDirectory(singleDirectory, versionDirectory);
+                versionedPath = versionDirectory;
             } else if (directoryContainsSingleFile(extractLocation)) {
-                String newFileName = driver.getFileName();
-                moveFileInDirectory(extractLocation, iwd.installationDirectory.toPath(), newFileName);
-                makeExecutable(iwd.installationDirectory.toPath().resolve(newFileName));
+                Path singleFile = extractLocation.toFile().listFiles()[0].toPath();
+                makeExecutable(singleFile);
+                // not a temp directory, those are private to the user and the version directory must not be
+                versionStagingDirectory = Files.createDirectory(installationDirectory.resolve(
+                        STAGING_DIRECTORY_PREFIX + InstallationManifest.versionKey(driver) + "-" + UUID.randomUUID()));
+                Files.move(singleFile, versionStagingDirectory.resolve(driver.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                publishDirectory(versionStagingDirectory, versionDirectory);
+                versionedPath = versionDirectory.resolve(driver.getFileName());
             } else {
-                moveAllFilesInDirectory(extractLocation, iwd.installationDirectory.toPath().resolve(driver.getId()));
+                publishDirectory(extractLocation, versionDirectory);
+                versionedPath = versionDirectory;
             }
 
-            versionHandler.writeVersionFile(driver);
+            manifest.record(driver, versionedPath, iwd.cacheHashesInExtendedAttributes);
+            activate(driver, versionedPath);
+        } catch (InstallWebDriversException e) {
+            throw e;
         } catch (Exception e) {
             throw new InstallWebDriversException("Failed to install driver cause of " + e.getMessage(), e, iwd, driver);
+        } finally {
+            deleteStagingDirectory(extractLocation);
+            if (versionStagingDirectory != null) {
+                deleteStagingDirectory(versionStagingDirectory);
+            }
         }
+    }
 
+    /**
+     * @return the directory holding one installed version of a driver
+     */
+    static Path versionDirectory(Path installationDirectory, Driver driver) {
+        return installationDirectory.resolve(VERSIONS_DIRECTORY).resolve(InstallationManifest.versionKey(driver));
     }
 
-    private boolean isInstalled(Driver driver) {
-        Path path = iwd.installationDirectory.toPath().resolve(driver.getFileName());
-        return path.toFile().exists();
+    private Path stablePath(Driver driver, Path versionedPath) {
+        return stablePath(iwd.installationDirectory.toPath(), driver, versionedPath);
     }
 
-    private boolean directoryIsEmpty(Path directory) {
-        return directory.toFile().listFiles().length == 0;
+    /**
+     * @return the path drivers are started from, a file named
+     * {@link Driver#getFileName()} for single file drivers, a directory named
+     * {@link Driver#getId()} otherwise
+     */
+    static Path stablePath(Path installationDirectory, Driver driver, Path versionedPath) {
+        return Files.isDirectory(versionedPath, LinkOption.NOFOLLOW_LINKS)
+                ? installationDirectory.resolve(driver.getId())
+                : installationDirectory.resolve(driver.getFileName());
     }
 
-    private boolean directoryContainsSingleFile(Path directory) throws InstallWebDriversException {
-        File[] files = directory.toFile().listFiles();
-        return files != null && files.length == 1 && files[0].isFile();
+    private boolean isCurrent(Driver driver, Path versionedPath) throws IOException {
+        Path stablePath = stablePath(driver, versionedPath);
+        if (Files.isSymbolicLink(stablePath)) {
+            return Files.exists(stablePath) && Files.isSameFile(stablePath, versionedPath);
+        }
+        // a hard link or a copy
+        return Files.exists(stablePath) && manifest.isCurrent(driver);
     }
 
-    private boolean directoryContainsSingleDirectory(Path directory) {
-        File[] files = directory.toFile().listFiles();
-        return files != null && files.length == 1 && files[0].isDirectory();
+    /**
+     * Points the stable path at the versioned path and records the version as
+     * current. Only the link is replaced, switching versions reads and writes no
+     * driver files.
+     */
+    private void activate(Driver driver, Path versionedPath) throws IOException {
+        Path stablePath = stablePath(driver, versionedPath);
+        logger.info("  Linking " + Utils.quote(stablePath) + " to " + Utils.quote(versionedPath));
+        Path link = stablePath.resolveSibling(LINK_PREFIX + stablePath.getFileName() + "-" + UUID.randomUUID());
+        try {
+            createLink(link, versionedPath);
+            if (Files.isDirectory(stablePath, LinkOption.NOFOLLOW_LINKS)) {
+                // an in-place installation or a copied directory, a rename can not replace it
+                publishDirectory(link, stablePath);
+            } else {
+                Files.move(link, stablePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (Files.exists(link, LinkOption.NOFOLLOW_LINKS)) {
+                FileUtils.deleteQuietly(link.toFile());
+            }
+        }
+        manifest.setCurrent(driver);
     }
 
-    private void moveFileInDirectory(Path from, Path to, String newFileName) throws InstallWebDriversException {
-        assert directoryContainsSingleFile(from);
+    /**
+     * Creates a relative symbolic link. Where symbolic links are not permitted,
+     * e.g. on Windows without developer mode, files are hard linked and
+     * directories copied.
+     */
+    private static void createLink(Path link, Path target) throws IOException {
         try {
-            List<String> files = FileUtils.getFileNames(from.toFile(), null, null, true);
-            Path singleFile = Paths.get(files.get(0));
-            logger.info("  Moving " + Utils.quote(singleFile) + " to " + Utils.quote(to.resolve(newFileName)));
-            FileUtils.forceDelete(to.resolve(newFileName).toFile());
-            Files.move(singleFile, to.resolve(newFileName));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to move file in directory " + Utils.quote(from) + " to " + Utils.quote(to.resolve(newFileName)), e);
+            Files.createSymbolicLink(link, link.getParent().relativize(target));
+            return;
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.debug("  Failed to create symbolic link " + Utils.quote(link) + ", falling back to a hard link or copy", e);
+        }
+        if (Files.isDirectory(target)) {
+            FileUtils.copyDirectory(target.toFile(), link.toFile());
+            return;
         }
+        try {
+            Files.createLink(link, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(target, link, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Moves an in-place installation into its versioned directory.
+     */
+    private void adopt(Driver driver, Path stablePath) throws IOException {
+        Path versionDirectory = versionDirectory(iwd.installationDirectory.toPath(), driver);
+        Path versionedPath;
+        if (Files.isDirectory(stablePath)) {
+            Files.createDirectories(versionDirectory.getParent());
+            Files.move(stablePath, versionDirectory, StandardCopyOption.ATOMIC_MOVE);
+            versionedPath = versionDirectory;
+        } else {
+            Files.createDirectories(versionDirectory);
+            versionedPath = versionDirectory.resolve(driver.getFileName());
+            Files.move(stablePath, versionedPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        manifest.record(driver, versionedPath, iwd.cacheHashesInExtendedAttributes);
+        activate(driver, versionedPath);
+    }
+
+    /**
+     * Creates a staging directory next to the installed drivers, renames out of
+     * it are atomic and need no copy.
+     */
+    static Path createStagingDirectory(Path installationDirectory, Driver driver) throws IOException {
+        Files.createDirectories(installationDirectory);
+        return Files.createTempDirectory(installationDirectory, STAGING_DIRECTORY_PREFIX + driver.getId() + "-");
     }
 
-    private void moveAllFilesInDirectory(Path from, Path to) throws InstallWebDriversException {
+    /**
+     * A non empty directory can not be replaced by a single rename, the old
+     * directory is renamed away first and deleted in the background after the
+     * new one is in place.
+     */
+    private void publishDirectory(Path stagedDirectory, Path installedDirectory) throws IOException {
+        logger.info("  Moving " + Utils.quote(stagedDirectory) + " to " + Utils.quote(installedDirectory));
+        Path replacedDirectory = null;
+        if (Files.exists(installedDirectory)) {
+            replacedDirectory = installedDirectory.resolveSibling(
+                    TRASH_PREFIX + installedDirectory.getFileName() + "-" + UUID.randomUUID());
+            Files.move(installedDirectory, replacedDirectory, StandardCopyOption.ATOMIC_MOVE);
+        }
         try {
-            Files.createDirectories(to);
-            for (File file : from.toFile().listFiles()) {
-                logger.info("  Moving " + file + " to " + to.resolve(file.toPath().getFileName()));
-                FileUtils.forceDelete(to.resolve(file.toPath().getFileName()).toFile());
-                Files.move(file.toPath(), to.resolve(file.toPath().getFileName()));
+            Files.move(stagedDirectory, installedDirectory, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (replacedDirectory != null) {
+                // put the old driver back
+                Files.move(replacedDirectory, installedDirectory, StandardCopyOption.ATOMIC_MOVE);
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to move directory " + Utils.quote(from) + " to " + Utils.quote(to), e);
+            throw e;
+        }
+        if (replacedDirectory != null) {
+            WorkDirectories.deleteInBackground(replacedDirectory);
+        }
+    }
+
+    private void deleteStagingDirectory(Path stagingDirectory) {
+        try {
+            WorkDirectories.deleteInBackground(stagingDirectory);
+        } catch (IOException e) {
+            logger.warn("  Failed to delete staging directory " + Utils.quote(stagingDirectory), e);
         }
     }
 
+    private boolean directoryIsEmpty(Path directory) {
+        return directory.toFile().listFiles().length == 0;
+    }
+
+    private boolean directoryContainsSingleFile(Path directory) throws InstallWebDriversException {
+        File[] files = directory.toFile().listFiles();
+        return files != null && files.length == 1 && files[0].isFile();
+    }
+
+    private boolean directoryContainsSingleDirectory(Path directory) {
+        File[] files = directory.toFile().listFiles();
+        return files != null && files.length == 1 && files[0].isDirectory();
+    }
+
     private void makeExecutable(Path path) {
         File file = path.toFile();
         if (file.exists() && !file.canExecute()) {
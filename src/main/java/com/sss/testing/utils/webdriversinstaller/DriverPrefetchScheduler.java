@@ -0,0 +1,214 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads new driver versions into the download directory before an
+ * installation needs them, for daemons and other long-lived JVMs.
+ * <p>
+ * Every run polls the repositories with conditional requests and only when one
+ * of them changed resolves the watched specs, for the running host unless they
+ * name platform and bit. Resolved versions neither cached in the download
+ * directory nor installed in the installation directory are downloaded on a low
+ * priority daemon thread with limited bandwidth, without holding the lock of
+ * the download directory until they are complete. Installations take cached
+ * downloads from the download directory.
+ */
+public class DriverPrefetchScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(DriverPrefetchScheduler.class);
+
+    public static final long DEFAULT_MAX_BYTES_PER_SECOND = 1024 * 1024; // 1 MiB/s
+
+    private static final String DOWNLOAD_COMPLETED_FILE = "download.completed";
+
+    private final InstallWebDrivers iwd;
+    private final List<Driver> specs;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(lowPriorityThreadFactory());
+    /**
+     * ETag or Last-Modified of every repository when it was last prefetched from.
+     */
+    private final Map<URL, String> validators = new ConcurrentHashMap<>();
+    private volatile long maxBytesPerSecond = DEFAULT_MAX_BYTES_PER_SECOND;
+
+    /**
+     * Prefetched downloads are kept in the download directory, also if the
+     * instance does not keep the downloads of its installations.
+     *
+     * @param iwd   configures the repositories, download and installation directory
+     * @param specs drivers to watch, usually without version to get the latest
+     */
+    public DriverPrefetchScheduler(InstallWebDrivers iwd, List<Driver> specs) {
+        this.iwd = iwd;
+        this.specs = new ArrayList<>(specs);
+    }
+
+    /**
+     * @param maxBytesPerSecond bandwidth a prefetch may take, {@link Long#MAX_VALUE} for no limit
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        if (maxBytesPerSecond <= 0) {
+            throw new IllegalArgumentException("maxBytesPerSecond must be positive: " + maxBytesPerSecond);
+        }
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+     * Prefetches now and then periodically until {@link #stop()} or the returned
+     * future is cancelled. Failed runs are logged and retried by the next run.
+     */
+    public ScheduledFuture<?> start(long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prefetchNewVersions();
+                } catch (InstallWebDriversException | RuntimeException e) {
+                    logger.warn("Prefetching drivers failed cause of " + e.getMessage(), e);
+                }
+            }
+        }, 0, period, unit);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs one prefetch on the calling thread.
+     *
+     * @return the drivers downloaded, empty if the repositories did not change
+     * or all resolved versions are cached or installed
+     * @throws InstallWebDriversException if the repositories could not be loaded or a download failed
+     */
+    public List<ResolvedDriver> prefetchNewVersions() throws InstallWebDriversException {
+        Map<URL, String> currentValidators = pollRepositories();
+        if (currentValidators.isEmpty()) {
+            logger.info("Repositories unchanged, nothing to prefetch");
+            return Collections.emptyList();
+        }
+
+        List<ResolvedDriver> prefetched = new ArrayList<>();
+        InstallationManifest manifest = InstallationManifest.forDirectory(iwd.installationDirectory.toPath());
+        DriverDownloader driverDownloader = new DriverDownloader(iwd, maxBytesPerSecond, true);
+        for (DriverResolution resolution : iwd.resolveDrivers(specs)) {
+            if (!resolution.isResolved()) {
+                logger.info("  Not prefetching " + resolution.getSpec().getId() + " cause of " + resolution.getDiagnostic());
+                continue;
+            }
+            Driver driver = resolution.getResolved().toDriver();
+            try {
+                if (isCached(driver) || manifest.contains(driver)) {
+                    continue;
+                }
+                logger.info("  Prefetching " + driver.getId() + " version " + driver.getVersion());
+                try (WorkDirectories.WorkDirectory workDirectory = WorkDirectories.create(iwd.tempDirectory)) {
+                    if (!iwd.prefetch(driverDownloader, driver, workDirectory.getPath())) {
+                        logger.info("  " + driver.getId() + " version " + driver.getVersion() + " was downloaded meanwhile");
+                        continue;
+                    }
+                }
+                prefetched.add(resolution.getResolved());
+            } catch (IOException e) {
+                throw new InstallWebDriversException("Failed to prefetch " + driver.getId() + " cause of " + e.getMessage(), e);
+            }
+        }
+        // only now, a failed run is repeated by the next run
+        validators.putAll(currentValidators);
+        return prefetched;
+    }
+
+    /**
+     * @return the validators of the repositories that changed since the last
+     * successful run, empty if none changed
+     */
+    private Map<URL, String> pollRepositories() {
+        Map<URL, String> changed = new HashMap<>();
+        for (RepositorySource source : iwd.repositorySources()) {
+            URL url = source.getUrl();
+            try {
+                String validator = poll(url, validators.get(url));
+                if (validator != null) {
+                    changed.put(url, validator);
+                }
+            } catch (IOException e) {
+                logger.info("  Failed to poll repository " + Utils.quote(url) + " cause of " + e);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the new validator of the repository or null if it is unchanged
+     */
+    private static String poll(URL url, String validator) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(Repository.REPOSITORY_CONNECT_TIMEOUT);
+        connection.setReadTimeout(Repository.REPOSITORY_READ_TIMEOUT);
+        connection.setUseCaches(false);
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            if (validator != null) {
+                httpConnection.setRequestProperty(validator.startsWith("\"") || validator.startsWith("W/")
+                        ? "If-None-Match" : "If-Modified-Since", validator);
+            }
+            try {
+                int status = httpConnection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return null;
+                }
+                if (status >= 300) {
+                    throw new IOException("HTTP status " + status);
+                }
+                String etag = httpConnection.getHeaderField("ETag");
+                String lastModified = httpConnection.getHeaderField("Last-Modified");
+                // without validators every poll counts as change
+                String newValidator = etag != null ? etag : lastModified != null ? lastModified : String.valueOf(System.nanoTime());
+                return newValidator.equals(validator) ? null : newValidator;
+            } finally {
+                httpConnection.disconnect();
+            }
+        }
+        // e.g. file and jar urls
+        long lastModified = connection.getLastModified();
+        connection.getInputStream().close();
+        String newValidator = lastModified != 0 ? String.valueOf(lastModified) : String.valueOf(System.nanoTime());
+        return newValidator.equals(validator) ? null : newValidator;
+    }
+
+    private boolean isCached(Driver driver) {
+        Path downloadPath = iwd.downloadDirectory.resolve(driver.getDriverDownloadDirectoryName());
+        return Files.exists(downloadPath.resolve(DOWNLOAD_COMPLETED_FILE))
+                && Files.exists(downloadPath.resolve(driver.getFilenameFromUrl()));
+    }
+
+    private static ThreadFactory lowPriorityThreadFactory() {
+        final ThreadFactory threadFactory = Utils.daemonThreadFactory("webdrivers-installer-prefetch-scheduler");
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = threadFactory.newThread(runnable);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+/**
+ * Outcome of resolving one {@link Driver} spec, either a {@link ResolvedDriver}
+ * or a diagnostic telling why the spec could not be resolved.
+ */
+public final class DriverResolution {
+
+    public enum Status {
+        /**
+         * The spec was resolved, see {@link #getResolved()}.
+         */
+        RESOLVED,
+        /**
+         * The spec itself is invalid, e.g. has no name.
+         */
+        INVALID_SPEC,
+        /**
+         * The explicitly configured platform, bit or version is not in the repository.
+         */
+        NOT_IN_REPOSITORY,
+        /**
+         * The repository has no driver for the (detected) platform and bit.
+         */
+        UNREACHABLE
+    }
+
+    private final Driver spec;
+    private final Status status;
+    private final ResolvedDriver resolved;
+    private final String diagnostic;
+
+    private DriverResolution(Driver spec, Status status, ResolvedDriver resolved, String diagnostic) {
+        this.spec = spec;
+        this.status = status;
+        this.resolved = resolved;
+        this.diagnostic = diagnostic;
+    }
+
+    static DriverResolution resolved(Driver spec, ResolvedDriver resolved) {
+        return new DriverResolution(spec, Status.RESOLVED, resolved, null);
+    }
+
+    static DriverResolution failed(Driver spec, Status status, String diagnostic) {
+        return new DriverResolution(spec, status, null, diagnostic);
+    }
+
+    /**
+     * @return the spec as given, it is not modified by the resolution
+     */
+    public Driver getSpec() {
+        return spec;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isResolved() {
+        return status == Status.RESOLVED;
+    }
+
+    /**
+     * @return the resolved driver or null if not resolved
+     */
+    public ResolvedDriver getResolved() {
+        return resolved;
+    }
+
+    /**
+     * @return why the spec could not be resolved or null if resolved
+     */
+    public String getDiagnostic() {
+        return diagnostic;
+    }
+
+    @Override
+    public String toString() {
+        return isResolved() ? "resolved " + resolved.getId() + " version " + resolved.getVersion()
+                : status + ": " + diagnostic;
+    }
+}
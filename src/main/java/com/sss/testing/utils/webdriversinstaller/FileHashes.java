@@ -0,0 +1,122 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes of installed files. A hash can be cached in a user extended
+ * attribute of the file together with the size and modification time it was
+ * computed for; the cached hash is only used while both are unchanged. File
+ * systems without extended attributes just compute the hash every time.
+ */
+class FileHashes {
+
+    static final String HASH_ATTRIBUTE = "webdrivers-installer.sha256";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private FileHashes() {
+    }
+
+    /**
+     * @param useExtendedAttribute read and write the hash cached in the extended attribute
+     * @return hex encoded SHA-256 of the file
+     */
+    static String sha256(Path file, BasicFileAttributes attributes, boolean useExtendedAttribute) throws IOException {
+        if (useExtendedAttribute) {
+            String cached = readCachedHash(file, attributes);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String hash = sha256(file);
+        if (useExtendedAttribute) {
+            writeCachedHash(file, attributes, hash);
+        }
+        return hash;
+    }
+
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return identity of the file on its file system, the inode on unix, or null if not available
+     */
+    static String fileKey(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? null : fileKey.toString();
+    }
+
+    private static String readCachedHash(Path file, BasicFileAttributes attributes) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return null;
+        }
+        try {
+            if (!view.list().contains(HASH_ATTRIBUTE)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(HASH_ATTRIBUTE));
+            view.read(HASH_ATTRIBUTE, buffer);
+            buffer.flip();
+            // size:lastModified:hash
+            String[] value = StandardCharsets.UTF_8.decode(buffer).toString().split(":");
+            if (value.length == 3
+                    && value[0].equals(String.valueOf(attributes.size()))
+                    && value[1].equals(String.valueOf(attributes.lastModifiedTime().toMillis()))) {
+                return value[2];
+            }
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // no extended attributes on this file system
+        }
+        return null;
+    }
+
+    private static void writeCachedHash(Path file, BasicFileAttributes attributes, String hash) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        String value = attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + ":" + hash;
+        try {
+            view.write(HASH_ATTRIBUTE, StandardCharsets.UTF_8.encode(value));
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // only a cache, the hash is computed again next time
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
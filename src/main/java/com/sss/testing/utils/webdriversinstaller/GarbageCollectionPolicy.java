@@ -0,0 +1,63 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+/**
+ * Which installed driver versions {@link InstallWebDrivers#collectGarbage(GarbageCollectionPolicy)}
+ * removes. The current version of a driver is never removed. By default all
+ * versions are kept and only leftovers of crashed installations, incomplete
+ * downloads and stale version files are removed.
+ */
+public class GarbageCollectionPolicy {
+
+    private int keepLatestVersions = Integer.MAX_VALUE;
+    private long maxTotalSize = Long.MAX_VALUE;
+    private long maxAge = Long.MAX_VALUE;
+
+    public int getKeepLatestVersions() {
+        return keepLatestVersions;
+    }
+
+    /**
+     * @param keepLatestVersions number of the highest versions to keep per driver id, the current version is kept
+     *                           in addition if it is not among them
+     */
+    public void setKeepLatestVersions(int keepLatestVersions) {
+        if (keepLatestVersions < 0) {
+            throw new IllegalArgumentException("keepLatestVersions must not be negative: " + keepLatestVersions);
+        }
+        this.keepLatestVersions = keepLatestVersions;
+    }
+
+    public long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    /**
+     * @param maxTotalSize bytes all installed versions may take, the least recently installed versions that are not
+     *                     current are removed until they fit
+     */
+    public void setMaxTotalSize(long maxTotalSize) {
+        if (maxTotalSize < 0) {
+            throw new IllegalArgumentException("maxTotalSize must not be negative: " + maxTotalSize);
+        }
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @param maxAge milliseconds after installation a version that is not current and a cached download is kept
+     */
+    public void setMaxAge(long maxAge) {
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("maxAge must not be negative: " + maxAge);
+        }
+        this.maxAge = maxAge;
+    }
+
+    @Override
+    public String toString() {
+        return "keepLatestVersions=" + keepLatestVersions + ", maxTotalSize=" + maxTotalSize + ", maxAge=" + maxAge;
+    }
+}
@@ -0,0 +1,52 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a garbage collection run removed and what it skipped since it was in use.
+ */
+public final class GarbageCollectionReport {
+
+    private final List<Path> removedPaths = new ArrayList<>();
+    private final List<String> skipped = new ArrayList<>();
+    private long reclaimedBytes;
+
+    GarbageCollectionReport() {
+    }
+
+    synchronized void removed(Path path, long bytes) {
+        removedPaths.add(path);
+        reclaimedBytes += bytes;
+    }
+
+    synchronized void skipped(String reason) {
+        skipped.add(reason);
+    }
+
+    /**
+     * @return bytes of all removed files
+     */
+    public synchronized long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    public synchronized List<Path> getRemovedPaths() {
+        return Collections.unmodifiableList(new ArrayList<>(removedPaths));
+    }
+
+    /**
+     * @return what was not collected since another thread or process was using it
+     */
+    public synchronized List<String> getSkipped() {
+        return Collections.unmodifiableList(new ArrayList<>(skipped));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "reclaimed " + reclaimedBytes + " bytes in " + removedPaths.size() + " paths"
+                + (skipped.isEmpty() ? "" : ", skipped " + skipped);
+    }
+}
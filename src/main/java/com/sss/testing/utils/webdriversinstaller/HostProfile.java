@@ -0,0 +1,208 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.openqa.selenium.Platform;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import static com.sss.testing.utils.webdriversinstaller.Utils.FAKED_BIT_PROPERTY_KEY;
+import static com.sss.testing.utils.webdriversinstaller.Utils.FAKED_OS_NAME_PROPERTY_KEY;
+
+/**
+ * Immutable description of the running host. The host is probed once per JVM,
+ * the faked os name and bit properties of {@link Utils} are applied on top of
+ * the probed profile on every {@link #current()} call. Profiles are equal when
+ * all their values are equal, so they can be used as cache keys.
+ */
+public final class HostProfile {
+
+    public static final String WINDOWS = "windows";
+    public static final String MAC = "mac";
+    public static final String LINUX = "linux";
+
+    public static final String GLIBC = "glibc";
+    public static final String MUSL = "musl";
+
+    private static volatile HostProfile probed;
+
+    private final String os;
+    private final boolean windows10;
+    private final String osVersion;
+    private final String arch;
+    private final String bit;
+    private final String libc;
+
+    /**
+     * @param os        platform as used in the repository: windows, mac or linux
+     * @param windows10 true on Windows 10 or later
+     * @param osVersion os version, may be null
+     * @param arch      os architecture, e.g. amd64, may be null
+     * @param bit       32 or 64
+     * @param libc      glibc or musl on linux, otherwise null
+     */
+    public HostProfile(String os, boolean windows10, String osVersion, String arch, String bit, String libc) {
+        this.os = os;
+        this.windows10 = windows10;
+        this.osVersion = osVersion;
+        this.arch = arch;
+        this.bit = bit;
+        this.libc = libc;
+    }
+
+    /**
+     * @return the profile of the running host with faked properties applied
+     */
+    public static HostProfile current() {
+        HostProfile profile = probed;
+        if (profile == null) {
+            synchronized (HostProfile.class) {
+                if (probed == null) {
+                    probed = probe();
+                }
+                profile = probed;
+            }
+        }
+        return profile.withFakedProperties(System.getProperty(FAKED_OS_NAME_PROPERTY_KEY),
+                System.getProperty(FAKED_BIT_PROPERTY_KEY));
+    }
+
+    private static HostProfile probe() {
+        Platform platform = Platform.getCurrent();
+        String os;
+        if (platform.is(Platform.WINDOWS)) {
+            os = WINDOWS;
+        } else if (platform.is(Platform.MAC)) {
+            os = MAC;
+        } else if (platform.is(Platform.LINUX)) {
+            os = LINUX;
+        } else {
+            os = System.getProperty("os.name").toLowerCase();
+        }
+        return new HostProfile(os,
+                platform.is(Platform.WIN10),
+                System.getProperty("os.version"),
+                System.getProperty("os.arch"),
+                com.sun.jna.Platform.is64Bit() ? "64" : "32",
+                LINUX.equals(os) ? probeLibc() : null);
+    }
+
+    private static String probeLibc() {
+        for (String directory : new String[]{"/lib", "/usr/lib"}) {
+            Path libDirectory = Paths.get(directory);
+            if (!Files.isDirectory(libDirectory)) {
+                continue;
+            }
+            try (DirectoryStream<Path> muslLoaders = Files.newDirectoryStream(libDirectory, "ld-musl-*")) {
+                if (muslLoaders.iterator().hasNext()) {
+                    return MUSL;
+                }
+            } catch (IOException e) {
+                // not readable, assume the common case
+            }
+        }
+        return GLIBC;
+    }
+
+    private HostProfile withFakedProperties(String fakedOsName, String fakedBit) {
+        if (fakedOsName == null && fakedBit == null) {
+            return this;
+        }
+        String fakedOs = os;
+        boolean fakedWindows10 = windows10;
+        String fakedLibc = libc;
+        if (fakedOsName != null) {
+            // taken literally like before the profile existed: a faked windows10
+            // is Windows 10 but not windows, and still resolves windows drivers
+            fakedWindows10 = "windows10".equals(fakedOsName);
+            fakedOs = fakedOsName;
+            fakedLibc = LINUX.equals(fakedOs) ? (libc != null ? libc : GLIBC) : null;
+        }
+        String bitValue = "64".equals(fakedBit) || "32".equals(fakedBit) ? fakedBit : bit;
+        return new HostProfile(fakedOs, fakedWindows10, osVersion, arch, bitValue, fakedLibc);
+    }
+
+    public String getOs() {
+        return os;
+    }
+
+    public String getOsVersion() {
+        return osVersion;
+    }
+
+    public String getArch() {
+        return arch;
+    }
+
+    public String getBit() {
+        return bit;
+    }
+
+    public String getLibc() {
+        return libc;
+    }
+
+    public boolean isWindows() {
+        return WINDOWS.equals(os);
+    }
+
+    public boolean isWindows10() {
+        return windows10;
+    }
+
+    public boolean isMac() {
+        return MAC.equals(os);
+    }
+
+    public boolean isLinux() {
+        return LINUX.equals(os);
+    }
+
+    public boolean is64Bit() {
+        return "64".equals(bit);
+    }
+
+    /**
+     * @return the repository platform of this host, hosts that are neither mac
+     * nor linux count as windows
+     */
+    public String getPlatform() {
+        if (isMac()) {
+            return MAC;
+        } else if (isLinux()) {
+            return LINUX;
+        }
+        return WINDOWS;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HostProfile)) {
+            return false;
+        }
+        HostProfile that = (HostProfile) o;
+        return windows10 == that.windows10
+                && Objects.equals(os, that.os)
+                && Objects.equals(osVersion, that.osVersion)
+                && Objects.equals(arch, that.arch)
+                && Objects.equals(bit, that.bit)
+                && Objects.equals(libc, that.libc);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(os, windows10, osVersion, arch, bit, libc);
+    }
+
+    @Override
+    public String toString() {
+        return os + (windows10 && isWindows() ? " 10" : "") + " " + osVersion + " " + arch + " " + bit + "bit"
+                + (libc != null ? " " + libc : "");
+    }
+}
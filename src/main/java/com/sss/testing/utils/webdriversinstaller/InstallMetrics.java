@@ -0,0 +1,108 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+/**
+ * Instrumentation of the installation stages, see {@link InstallWebDrivers#setMetrics(InstallMetrics)}.
+ * <p>
+ * Every stage run is started with {@link #start(String, String)} and reports
+ * bytes, cache outcome and retries to the returned recorder before it is ended.
+ * The stages are the <code>STAGE_*</code> constants of {@link InstallResult}:
+ * every installation loads the repository and resolves the driver, then the
+ * install stage spans the rest of it, with the download, validate and extract
+ * stages nested in it when the version is not installed yet.
+ * Implementations must be thread safe, installations run concurrently.
+ */
+public interface InstallMetrics {
+
+    /**
+     * Records nothing and allocates nothing.
+     */
+    InstallMetrics NOOP = new InstallMetrics() {
+        @Override
+        public StageRecorder start(String stage, String driverId) {
+            return StageRecorder.NOOP;
+        }
+    };
+
+    /**
+     * Emits a Java Flight Recorder event per stage run, enabled and disabled
+     * like any JFR event by the settings of the running recordings. JFR is
+     * neither initialized nor loaded by it: the event classes are only loaded
+     * by the first stage started after a recording was started.
+     *
+     * @return the JFR metrics, recording nothing without JFR
+     */
+    static InstallMetrics flightRecorder() {
+        return LazyJfrInstallMetrics.INSTANCE;
+    }
+
+    /**
+     * How a stage was served.
+     */
+    enum CacheOutcome {
+        /**
+         * Taken from a cache without checking it, e.g. the download directory,
+         * a bundle or an installed version.
+         */
+        HIT,
+        /**
+         * Not cached, e.g. downloaded or installed.
+         */
+        MISS,
+        /**
+         * Taken from a cache after checking it against its checksum, e.g. the
+         * local Maven repository.
+         */
+        REVALIDATED
+    }
+
+    /**
+     * @param stage    one of the <code>STAGE_*</code> constants of {@link InstallResult}
+     * @param driverId id of the driver, null for the repository stage
+     * @return the recorder of this stage run, ended exactly once
+     */
+    StageRecorder start(String stage, String driverId);
+
+    /**
+     * One run of a stage.
+     */
+    interface StageRecorder {
+
+        StageRecorder NOOP = new StageRecorder() {
+            @Override
+            public void addBytes(long bytes) {
+            }
+
+            @Override
+            public void cacheOutcome(CacheOutcome outcome) {
+            }
+
+            @Override
+            public void retry() {
+            }
+
+            @Override
+            public void end(boolean succeeded) {
+            }
+        };
+
+        /**
+         * @param url the url the stage reads from, e.g. of the driver archive
+         */
+        default void url(String url) {
+        }
+
+        void addBytes(long bytes);
+
+        void cacheOutcome(CacheOutcome outcome);
+
+        /**
+         * Counts a retried request of this stage.
+         */
+        void retry();
+
+        /**
+         * Ends the stage run, the duration is measured from its start.
+         */
+        void end(boolean succeeded);
+    }
+}
@@ -0,0 +1,96 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of {@link InstallWebDrivers#install(Driver)}: the installed
+ * version, where it is and how long its stages took.
+ */
+public final class InstallResult {
+
+    /**
+     * Where the archive of the driver came from.
+     */
+    public enum Download {
+        /**
+         * The version was installed already, nothing was downloaded.
+         */
+        NOT_NEEDED,
+        /**
+         * Taken from the download directory, a bundle or the local Maven repository.
+         */
+        CACHED,
+        /**
+         * Downloaded from its url.
+         */
+        DOWNLOADED
+    }
+
+    public static final String STAGE_REPOSITORY = "repository";
+    public static final String STAGE_RESOLVE = "resolve";
+    public static final String STAGE_LOCK = "lock";
+    public static final String STAGE_DOWNLOAD = "download";
+    /**
+     * Checking the downloaded archive, only reported to {@link InstallMetrics},
+     * it is part of the download in {@link #getStageMillis()}.
+     */
+    public static final String STAGE_VALIDATE = "validate";
+    public static final String STAGE_EXTRACT = "extract";
+    public static final String STAGE_INSTALL = "install";
+
+    private final ResolvedDriver driver;
+    private final Path path;
+    private final Path versionPath;
+    private final Download download;
+    private final Map<String, Long> stageMillis;
+
+    InstallResult(ResolvedDriver driver, Path path, Path versionPath, Download download, Map<String, Long> stageMillis) {
+        this.driver = driver;
+        this.path = path;
+        this.versionPath = versionPath;
+        this.download = download;
+        this.stageMillis = new LinkedHashMap<>(stageMillis);
+    }
+
+    public ResolvedDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return the stable path of the driver, pointing at the installed version
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the versioned path of the installed version, see {@link InstallWebDrivers#getInstalledPath(Driver)}
+     */
+    public Path getVersionPath() {
+        return versionPath;
+    }
+
+    public Download getDownload() {
+        return download;
+    }
+
+    public boolean isAlreadyInstalled() {
+        return download == Download.NOT_NEEDED;
+    }
+
+    /**
+     * @return milliseconds per stage in the order they ran, stages that did not
+     * run are missing, e.g. download for an installed version
+     */
+    public Map<String, Long> getStageMillis() {
+        return Collections.unmodifiableMap(stageMillis);
+    }
+
+    @Override
+    public String toString() {
+        return driver.getId() + " version " + driver.getVersion() + " at " + path + " (" + download + ", " + stageMillis + ")";
+    }
+}
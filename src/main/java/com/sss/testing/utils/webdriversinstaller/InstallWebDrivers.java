@@ -1,21 +1,54 @@
 package com.sss.testing.utils.webdriversinstaller;
 
-import org.apache.commons.io.FileUtils;
+import com.google.gson.Gson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class InstallWebDrivers {
     private static final Logger logger = LoggerFactory.getLogger(InstallWebDrivers.class);
 
+    private static final ConcurrentMap<String, CompletableFuture<InstallResult>> INSTALLATIONS_IN_FLIGHT = new ConcurrentHashMap<>();
+    /**
+     * JFR events of the stages, of all instances.
+     */
+    private static final InstallMetrics FLIGHT_RECORDER = InstallMetrics.flightRecorder();
+    private static final ScheduledExecutorService GARBAGE_COLLECTOR = Executors.newSingleThreadScheduledExecutor(
+            Utils.daemonThreadFactory("webdrivers-installer-garbage-collector"));
+
+    /**
+     * The public webdriverextensions repository, can be added as an additional
+     * (usually lower priority) source with {@link #addRepository(URL, int)}.
+     */
+    public static final String UPSTREAM_REPOSITORY_URL = "https://raw.githubusercontent.com"
+            + "/webdriverextensions/webdriverextensions-maven-plugin-repository/master/repository-3.0.json";
+
     /**
      * URL to where the repository file is located. The repository file is a
      * json file containing information of available drivers and their
@@ -24,149 +57,495 @@ public class InstallWebDrivers {
      * "https://raw.githubusercontent.com/webdriverextensions/webdriverextensions-maven-plugin-repository/master/repository-3.0.json"
      * but we use private repository
      */
-    URL repositoryUrl;
+    volatile URL repositoryUrl;
+
+    /**
+     * Additional repositories merged with the one at {@link #repositoryUrl}, which
+     * has priority {@link RepositorySource#DEFAULT_PRIORITY}. All repositories are
+     * loaded concurrently, for the same driver id and version the repository with
+     * the highest priority wins.
+     */
+    List<RepositorySource> additionalRepositories = new CopyOnWriteArrayList<>();
+
+    /**
+     * Remote Maven repositories drivers with a <code>mvn:</code> url are
+     * downloaded from when they are not in the local repository, in this order.
+     * Maven Central if empty, see {@link MavenArtifact}.
+     */
+    List<URL> mavenRepositories = new CopyOnWriteArrayList<>();
+
+    /**
+     * Local Maven repository drivers with a <code>mvn:</code> url are taken from
+     * and stored in.
+     */
+    Path mavenLocalRepository = MavenArtifact.defaultLocalRepository();
 
     /**
      * The path to the directory where the drivers are going to be installed.
      */
-    File installationDirectory;
-
-    /**
-     * List of drivers to install. Each driver has a name, platform, bit,
-     * version, URL and checksum that can be provided.<br/>
-     * <br/>
-     * If no drivers are provided the latest drivers will be installed for the
-     * running platform and the bit version will be chosen as if it has not
-     * been provided (see rule below).<br/>
-     * <br/>
-     * If no platform is provided for a driver the platform will automatically
-     * be set to the running platform.<br/>
-     * <br/>
-     * If no bit version is provided for a driver the bit will automatically
-     * be set to 32 if running the plugin on a windows or mac platform. However
-     * if running the plugin from a linux platform the bit will be determined
-     * from the OS bit version.<br/>
-     * <br/>
-     * If the driver is not available in the repository the plugin does not know
-     * from which URL to download the driver. In that case the URL should be
-     * provided for the driver together with a checksum (to retrieve the
-     * checksum run the plugin without providing a checksum once, the plugin
-     * will then calculate and print the checksum for you). The default
-     * repository with all available drivers can be found <a href="https://github.com/webdriverextensions/webdriverextensions-maven-plugin-repository/blob/master/repository-3.0.json">here</a>.<br/>
-     * <br/>
-     * <strong>Some Examples</strong><br/>
-     * Installing all latest drivers<br/>
-     * <pre>
-     * &lt;drivers&gt;
-     *   &lt;driver&gt;
-     *     &lt;name&gt;chromedriver&lt;/name&gt;
-     *     &lt;platform&gt;windows&lt;/platform&gt;
-     *     &lt;bit&gt;32&lt;/bit&gt;
-     *   &lt;/driver&gt;
-     *   &lt;driver&gt;
-     *     &lt;name&gt;chromedriver&lt;/name&gt;
-     *     &lt;platform&gt;mac&lt;/platform&gt;
-     *     &lt;bit&gt;32&lt;/bit&gt;
-     *   &lt;/driver&gt;
-     *   &lt;driver&gt;
-     *     &lt;name&gt;chromedriver&lt;/name&gt;
-     *     &lt;platform&gt;linux&lt;/platform&gt;
-     *     &lt;bit&gt;32&lt;/bit&gt;
-     *   &lt;/driver&gt;
-     *   &lt;driver&gt;
-     *     &lt;name&gt;chromedriver&lt;/name&gt;
-     *     &lt;platform&gt;linux&lt;/platform&gt;
-     *     &lt;bit&gt;64&lt;/bit&gt;
-     *   &lt;/driver&gt;
-     *   &lt;driver&gt;
-     *     &lt;name&gt;internetexplorerdriver&lt;/name&gt;
-     *     &lt;platform&gt;windows&lt;/platform&gt;
-     *     &lt;bit&gt;32&lt;/bit&gt;
-     *   &lt;/driver&gt;
-     *   &lt;driver&gt;
-     *     &lt;name&gt;internetexplorerdriver&lt;/name&gt;
-     *     &lt;platform&gt;windows&lt;/platform&gt;
-     *     &lt;bit&gt;64&lt;/bit&gt;
-     *   &lt;/driver&gt;
-     * &lt;/drivers&gt;
-     * </pre>
-     * <br/>
-     * <p/>
-     * Installing a driver not available in the repository, e.g. PhantomJS<br/>
-     * <pre>
-     * &lt;driver&gt;
-     *   &lt;name&gt;phanthomjs&lt;/name&gt;
-     *   &lt;platform&gt;mac&lt;/platform&gt;
-     *   &lt;bit&gt;32&lt;/bit&gt;
-     *   &lt;version&gt;1.9.7&lt;/version&gt;
-     *   &lt;url&gt;http://bitbucket.org/ariya/phantomjs/downloads/phantomjs-1.9.7-macosx.zip&lt;/url&gt;
-     *   &lt;checksum&gt;0f4a64db9327d19a387446d43bbf5186&lt;/checksum&gt;
-     * &lt;/driver&gt;
-     * </pre>
-     */
-    List<Driver> drivers = new ArrayList<>();
+    volatile File installationDirectory;
 
     /**
      * Keep downloaded files as local cache
      */
-    boolean keepDownloadedWebdrivers = false;
+    volatile boolean keepDownloadedWebdrivers = false;
+
+    /**
+     * Cache the content hashes of installed files in a user extended attribute
+     * of each file, so a copied or touched file is not hashed again as long as
+     * it is unchanged since. Ignored on file systems without extended attributes.
+     */
+    boolean cacheHashesInExtendedAttributes = false;
 
     Path pluginWorkingDirectory = Paths.get(System.getProperty("java.io.tmpdir")).resolve("webdrivers-installer");
     Path downloadDirectory = pluginWorkingDirectory.resolve("downloads");
+    /**
+     * Holds a unique working directory per installation, see {@link WorkDirectories}.
+     */
     Path tempDirectory = pluginWorkingDirectory.resolve("temp");
-    Repository repository;
+    BrowserVersionDetector browserVersionDetector = new BrowserVersionDetector(
+            pluginWorkingDirectory.resolve("browser-versions.json"));
+    /**
+     * Host to resolve drivers for, null for the running host.
+     */
+    volatile HostProfile hostProfile;
+    /**
+     * Bundle to read driver archives from before downloading them, see {@link #useBundle(Path)}.
+     */
+    volatile DriverBundle bundle;
+    /**
+     * Repository used instead of loading it, see {@link #pinRepository()}.
+     */
+    private volatile Repository pinnedRepository;
+    /**
+     * Instrumentation of the installation stages, see {@link #setMetrics(InstallMetrics)}.
+     */
+    volatile InstallMetrics metrics = FLIGHT_RECORDER;
 
     public InstallWebDrivers() {
         installationDirectory = new File(System.getProperty("user.dir") + "/drivers/");
         try {
             repositoryUrl = new URL(getClass().getResource("/drivers_config.json").getPath());
-//            repositoryUrl = new URL(new URL("https://raw.githubusercontent.com") +
-//                    "/webdriverextensions/webdriverextensions-maven-plugin-repository/master/repository-3.0.json");
         } catch (MalformedURLException e) {
             e.printStackTrace();
         }
     }
 
     /**
+     * Installs the driver into its versioned directory below
+     * <code>versions</code> and points the stable path
+     * {@link Driver#getFileName()} (a directory named {@link Driver#getId()} for
+     * drivers with several files) at it. A version installed before is not
+     * downloaded again, switching to it only replaces the link.
+     * <p>
+     * Safe to call concurrently, also from several instances: concurrent calls
+     * for the same resolved driver and installation directory share one
+     * installation and its outcome, installations of different drivers run in
+     * parallel. Installations of the same driver id are serialized with file
+     * locks in <code>.locks</code>, also across processes.
+     *
      * @param driverForInstall driver what you want to install
      * @throws InstallWebDriversException exception
+     * @see #install(Driver)
      */
     public void installDriver(Driver driverForInstall) throws InstallWebDriversException {
-        repository = new Repository().load(repositoryUrl);
+        install(driverForInstall);
+    }
+
+    /**
+     * Installs the driver like {@link #installDriver(Driver)} and reports the
+     * outcome.
+     *
+     * @param driverForInstall driver what you want to install
+     * @return the installed version, its paths and stage timings
+     * @throws InstallWebDriversException exception
+     */
+    public InstallResult install(Driver driverForInstall) throws InstallWebDriversException {
+        File installationDirectory = this.installationDirectory;
+        Map<String, Long> stageMillis = new LinkedHashMap<>();
+        long stageStart = System.nanoTime();
+        Repository repository = loadRepository();
+        stageStart = endStage(stageMillis, InstallResult.STAGE_REPOSITORY, stageStart);
 
         logger.info("Installation directory " + Utils.quote(installationDirectory.toPath()));
 
-        if (drivers.isEmpty()) {
-            logger.info("Installing latest drivers for current platform");
-            drivers = repository.getLatestDrivers();
-        } else {
-            logger.info("Installing drivers from configuration");
+        InstallMetrics.StageRecorder resolveStage = metrics.start(InstallResult.STAGE_RESOLVE, driverForInstall.getId());
+        Driver driver = null;
+        try {
+            driver = repository.enrichDriver(driverForInstall);
+        } finally {
+            resolveStage.end(driver != null);
+        }
+        if (driver == null) {
+            throw new IllegalArgumentException("  Unreachable driver: " + driverForInstall.toString());
+        }
+        stageStart = endStage(stageMillis, InstallResult.STAGE_RESOLVE, stageStart);
+        logger.info(driver.getId() + " version " + driver.getVersion());
+
+        String installationKey = installationDirectory.getAbsoluteFile().toPath().normalize()
+                + "|" + driver.getDriverDownloadDirectoryName() + "|" + driver.getUrl();
+        CompletableFuture<InstallResult> installation = new CompletableFuture<>();
+        CompletableFuture<InstallResult> runningInstallation = INSTALLATIONS_IN_FLIGHT.putIfAbsent(installationKey, installation);
+        if (runningInstallation != null) {
+            logger.info("  Waiting for concurrent installation of " + driver.getId());
+            return awaitInstallation(runningInstallation, driver);
         }
 
+        try (Closeable driverLock = InstallationLocks.lockDriver(installationDirectory.toPath(), driver.getId())) {
+            endStage(stageMillis, InstallResult.STAGE_LOCK, stageStart);
+            InstallResult result = install(driver, installationDirectory.toPath(), stageMillis);
+            installation.complete(result);
+            return result;
+        } catch (IOException e) {
+            InstallWebDriversException failure = new InstallWebDriversException("Failed to lock installation of "
+                    + driver.getId() + " cause of " + e.getMessage(), e);
+            installation.completeExceptionally(failure);
+            throw failure;
+        } catch (InstallWebDriversException | RuntimeException | Error e) {
+            // also errors, waiting installations would block forever otherwise
+            installation.completeExceptionally(e);
+            throw e;
+        } finally {
+            INSTALLATIONS_IN_FLIGHT.remove(installationKey, installation);
+        }
+    }
+
+    private InstallResult install(Driver driver, Path installationDirectory, Map<String, Long> stageMillis)
+            throws InstallWebDriversException, IOException {
         DriverDownloader driverDownloader = new DriverDownloader(this);
         DriverExtractor driverExtractor = new DriverExtractor(this);
         DriverInstaller driverInstaller = new DriverInstaller(this);
 
-        cleanupTempDirectory();
-        {
-            Driver driver = repository.enrichDriver(driverForInstall);
-            if (driver == null) {
-                throw new IllegalArgumentException("  Unreachable driver: " + driverForInstall.toString());
-            }
-            logger.info(driver.getId() + " version " + driver.getVersion());
+        InstallResult.Download download = InstallResult.Download.NOT_NEEDED;
+        long stageStart = System.nanoTime();
+        InstallMetrics.StageRecorder installStage = metrics.start(InstallResult.STAGE_INSTALL, driver.getId());
+        installStage.url(driver.getUrl());
+        boolean succeeded = false;
+        try {
             if (driverInstaller.needInstallation(driver)) {
-                Path downloadPath = downloadDirectory.resolve(driver.getDriverDownloadDirectoryName());
-                Path downloadLocation = driverDownloader.downloadFile(driver, downloadPath);
-                Path extractLocation = driverExtractor.extractDriver(driver, downloadLocation);
-                driverInstaller.install(driver, extractLocation);
-                if (!keepDownloadedWebdrivers) {
-                    cleanupDownloadsDirectory();
+                installStage.cacheOutcome(InstallMetrics.CacheOutcome.MISS);
+                try (WorkDirectories.WorkDirectory workDirectory = WorkDirectories.create(tempDirectory)) {
+                    Path downloadLocation = download(driverDownloader, driver, workDirectory.getPath());
+                    download = driverDownloader.wasCacheHit() ? InstallResult.Download.CACHED : InstallResult.Download.DOWNLOADED;
+                    stageStart = endStage(stageMillis, InstallResult.STAGE_DOWNLOAD, stageStart);
+                    Path extractLocation = extract(driverExtractor, driver, downloadLocation);
+                    stageStart = endStage(stageMillis, InstallResult.STAGE_EXTRACT, stageStart);
+                    driverInstaller.install(driver, extractLocation);
                 }
-                cleanupTempDirectory();
             } else {
+                installStage.cacheOutcome(InstallMetrics.CacheOutcome.HIT);
                 logger.info("  Already installed");
             }
+            succeeded = true;
+        } finally {
+            installStage.end(succeeded);
+        }
+        endStage(stageMillis, InstallResult.STAGE_INSTALL, stageStart);
+
+        InstalledDriver installed = InstallationManifest.forDirectory(installationDirectory).getInstalledDriver(driver);
+        Path versionPath = installed == null ? null : installationDirectory.resolve(installed.getPath());
+        Path path = versionPath == null
+                ? installationDirectory.resolve(driver.getFileName())
+                : DriverInstaller.stablePath(installationDirectory, driver, versionPath);
+        return new InstallResult(ResolvedDriver.of(driver), path, versionPath, download, stageMillis);
+    }
+
+    private Path extract(DriverExtractor driverExtractor, Driver driver, Path downloadLocation)
+            throws InstallWebDriversException {
+        InstallMetrics.StageRecorder extractStage = metrics.start(InstallResult.STAGE_EXTRACT, driver.getId());
+        extractStage.url(driver.getUrl());
+        boolean extracted = false;
+        try {
+            Path extractLocation = driverExtractor.extractDriver(driver, downloadLocation);
+            extracted = true;
+            return extractLocation;
+        } finally {
+            extractStage.end(extracted);
+        }
+    }
+
+    private static long endStage(Map<String, Long> stageMillis, String stage, long stageStart) {
+        long now = System.nanoTime();
+        stageMillis.put(stage, TimeUnit.NANOSECONDS.toMillis(now - stageStart));
+        return now;
+    }
+
+    /**
+     * Downloads the driver holding its download lock, the download directory is
+     * shared with installations into other installation directories.
+     *
+     * @return the cached download or the download in the working directory
+     */
+    Path download(DriverDownloader driverDownloader, Driver driver, Path workDirectory)
+            throws InstallWebDriversException, IOException {
+        String key = driver.getDriverDownloadDirectoryName();
+        try (Closeable downloadLock = InstallationLocks.lockFile(InstallationLocks.locksDirectory(downloadDirectory)
+                .resolve(key + ".lock"))) {
+            InstallMetrics.StageRecorder downloadStage = metrics.start(InstallResult.STAGE_DOWNLOAD, driver.getId());
+            downloadStage.url(driver.getUrl());
+            boolean downloaded = false;
+            try {
+                Path downloadLocation = driverDownloader.downloadFile(driver, downloadDirectory.resolve(key), workDirectory);
+                downloadStage.cacheOutcome(driverDownloader.getCacheOutcome());
+                if (driverDownloader.getCacheOutcome() == InstallMetrics.CacheOutcome.MISS) {
+                    // only bytes transferred over the network, not copied from a cache or bundle
+                    downloadStage.addBytes(Files.size(downloadLocation));
+                }
+                downloaded = true;
+                return downloadLocation;
+            } finally {
+                for (int retry = 0; retry < driverDownloader.getRetries(); retry++) {
+                    downloadStage.retry();
+                }
+                downloadStage.end(downloaded);
+            }
+        }
+    }
+
+    /**
+     * Downloads the driver like {@link #download(DriverDownloader, Driver, Path)}
+     * but takes the lock of its download directory only to publish it, so a slow
+     * background download does not hold up installations of the same driver.
+     * They download it themselves meanwhile.
+     *
+     * @return false if the driver was published meanwhile and the download is not needed anymore
+     */
+    boolean prefetch(DriverDownloader driverDownloader, Driver driver, Path workDirectory)
+            throws InstallWebDriversException, IOException {
+        String key = driver.getDriverDownloadDirectoryName();
+        InstallMetrics.StageRecorder downloadStage = metrics.start(InstallResult.STAGE_DOWNLOAD, driver.getId());
+        downloadStage.url(driver.getUrl());
+        boolean downloaded = false;
+        Path downloadFilePath;
+        try {
+            downloadFilePath = driverDownloader.fetchFile(driver, workDirectory);
+            downloadStage.cacheOutcome(driverDownloader.getCacheOutcome());
+            if (driverDownloader.getCacheOutcome() == InstallMetrics.CacheOutcome.MISS) {
+                downloadStage.addBytes(Files.size(downloadFilePath));
+            }
+            downloaded = true;
+        } finally {
+            for (int retry = 0; retry < driverDownloader.getRetries(); retry++) {
+                downloadStage.retry();
+            }
+            downloadStage.end(downloaded);
         }
+        try (Closeable downloadLock = InstallationLocks.lockFile(InstallationLocks.locksDirectory(downloadDirectory)
+                .resolve(key + ".lock"))) {
+            Path cacheDirectory = downloadDirectory.resolve(key);
+            if (driverDownloader.cachedFile(driver, cacheDirectory) != null) {
+                return false;
+            }
+            return !driverDownloader.publish(driver, cacheDirectory, downloadFilePath).equals(downloadFilePath);
+        }
+    }
+
+    private static InstallResult awaitInstallation(CompletableFuture<InstallResult> installation, Driver driver)
+            throws InstallWebDriversException {
+        try {
+            return installation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstallWebDriversException("Interrupted while waiting for installation of " + driver.getId(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new InstallWebDriversException("Concurrent installation of " + driver.getId() + " failed cause of "
+                    + cause.getMessage(), cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    /**
+     * Resolves all driver specs against the repository without installing them,
+     * e.g. to check a whole grid matrix up front. The specs are not modified.
+     *
+     * @param driverSpecs drivers to resolve, platform, bit and version are optional
+     * @return one resolution per spec in the same order
+     * @throws InstallWebDriversException if the repository could not be loaded
+     */
+    public List<DriverResolution> resolveDrivers(List<Driver> driverSpecs) throws InstallWebDriversException {
+        return loadRepository().resolveAll(driverSpecs);
+    }
+
+    /**
+     * Waits until replaced versions and working directories, which installations
+     * delete in the background, are deleted. Build tools call it before they
+     * snapshot the installation directory.
+     */
+    public void awaitBackgroundDeletions() throws InterruptedException {
+        WorkDirectories.awaitPendingDeletions();
+    }
+
+    /**
+     * Hash of the loaded repositories, all repository sources merged. Build tool
+     * plugins use it together with the resolved drivers to tell whether an
+     * installation is up to date.
+     *
+     * @return hex encoded SHA-256 of the merged repository
+     * @throws InstallWebDriversException if the repository could not be loaded
+     */
+    public String getRepositoryHash() throws InstallWebDriversException {
+        byte[] repositoryJson = new Gson().toJson(loadRepository().getDrivers()).getBytes(StandardCharsets.UTF_8);
+        return FileHashes.toHex(FileHashes.newDigest().digest(repositoryJson));
+    }
+
+    /**
+     * Returns the versioned path of a driver version, e.g.
+     * <code>versions/chromedriver-linux-64bit-2.32/chromedriver-linux-64bit</code>
+     * in the installation directory. Unlike the stable path, which points at the
+     * current version, it stays valid while other versions are installed.
+     *
+     * @param driverSpec driver to resolve, platform, bit and version are optional
+     * @return the installed file or directory or null if the resolved version is not installed
+     * @throws InstallWebDriversException if the repository or the manifest could not be read
+     */
+    public Path getInstalledPath(Driver driverSpec) throws InstallWebDriversException {
+        File installationDirectory = this.installationDirectory;
+        Driver driver = loadRepository().enrichDriver(driverSpec);
+        if (driver == null) {
+            throw new IllegalArgumentException("  Unreachable driver: " + driverSpec.toString());
+        }
+        try {
+            InstalledDriver installed = InstallationManifest.forDirectory(installationDirectory.toPath())
+                    .getInstalledDriver(driver);
+            return installed == null ? null : installationDirectory.toPath().resolve(installed.getPath());
+        } catch (IOException e) {
+            throw new InstallWebDriversException("Failed to read installation manifest in "
+                    + Utils.quote(installationDirectory.toPath()), e);
+        }
+    }
+
+    /**
+     * @return driver versions recorded in the installation manifest of the
+     * installation directory, the current and all other installed versions
+     * @throws InstallWebDriversException if the manifest could not be read
+     */
+    public List<InstalledDriver> listInstalledDrivers() throws InstallWebDriversException {
+        try {
+            return InstallationManifest.forDirectory(installationDirectory.toPath()).getInstalledDrivers();
+        } catch (IOException e) {
+            throw new InstallWebDriversException("Failed to read installation manifest in "
+                    + Utils.quote(installationDirectory.toPath()), e);
+        }
+    }
+
+    /**
+     * Verifies the content of all drivers in the installation manifest of the
+     * installation directory, the drivers are verified in parallel. Files are
+     * only hashed if their size, modification time or inode changed since they
+     * were recorded.
+     *
+     * @return drivers with missing or changed files, they are reinstalled by the
+     * next {@link #installDriver(Driver)}
+     * @throws InstallWebDriversException if the manifest could not be read or a file could not be hashed
+     */
+    public List<InstalledDriver> verifyInstalledDrivers() throws InstallWebDriversException {
+        final boolean useExtendedAttributes = cacheHashesInExtendedAttributes;
+        final InstallationManifest manifest = InstallationManifest.forDirectory(installationDirectory.toPath());
+        List<InstalledDriver> installedDrivers = listInstalledDrivers();
+        if (installedDrivers.isEmpty()) {
+            return installedDrivers;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(installedDrivers.size(), Runtime.getRuntime().availableProcessors()),
+                Utils.daemonThreadFactory("webdrivers-installer-verifier"));
+        try {
+            List<Future<Boolean>> verifications = new ArrayList<>();
+            for (final InstalledDriver installedDriver : installedDrivers) {
+                verifications.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException {
+                        return manifest.verify(installedDriver, useExtendedAttributes);
+                    }
+                }));
+            }
+
+            List<InstalledDriver> changedDrivers = new ArrayList<>();
+            for (int i = 0; i < installedDrivers.size(); i++) {
+                InstalledDriver installedDriver = installedDrivers.get(i);
+                try {
+                    if (!verifications.get(i).get()) {
+                        changedDrivers.add(installedDriver);
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw new InstallWebDriversException("Failed to verify " + installedDriver.getDriver().getId()
+                            + " cause of " + cause.getMessage(), cause instanceof Exception ? (Exception) cause : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InstallWebDriversException("Interrupted while verifying installed drivers", e);
+                }
+            }
+            return changedDrivers;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Removes installed driver versions according to the policy, leftovers of
+     * crashed installations, stale version files and cached downloads. Drivers
+     * being installed by other threads or processes are skipped.
+     *
+     * @return what was removed and how many bytes were reclaimed
+     * @throws InstallWebDriversException if a file could not be removed
+     */
+    public GarbageCollectionReport collectGarbage(GarbageCollectionPolicy policy) throws InstallWebDriversException {
+        try {
+            return new DriverGarbageCollector(this).collect(policy);
+        } catch (IOException e) {
+            throw new InstallWebDriversException("Failed to collect garbage in "
+                    + Utils.quote(installationDirectory.toPath()) + " cause of " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs {@link #collectGarbage(GarbageCollectionPolicy)} on a background
+     * daemon thread.
+     */
+    public Future<GarbageCollectionReport> collectGarbageInBackground(final GarbageCollectionPolicy policy) {
+        return GARBAGE_COLLECTOR.submit(new Callable<GarbageCollectionReport>() {
+            @Override
+            public GarbageCollectionReport call() throws InstallWebDriversException {
+                return collectGarbage(policy);
+            }
+        });
+    }
+
+    /**
+     * Runs {@link #collectGarbage(GarbageCollectionPolicy)} periodically on a
+     * background daemon thread until the returned future is cancelled. Failed
+     * runs are logged and do not stop later runs.
+     */
+    public ScheduledFuture<?> scheduleGarbageCollection(final GarbageCollectionPolicy policy, long period, TimeUnit unit) {
+        return GARBAGE_COLLECTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    collectGarbage(policy);
+                } catch (InstallWebDriversException | RuntimeException e) {
+                    logger.warn("Garbage collection failed cause of " + e.getMessage(), e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Reports the installation stages to the metrics, e.g. a
+     * {@link PrometheusInstallMetrics}. JFR events of the stages are emitted
+     * in addition, see {@link InstallMetrics#flightRecorder()}.
+     *
+     * @param metrics the metrics, null for none
+     */
+    public void setMetrics(InstallMetrics metrics) {
+        this.metrics = CompositeInstallMetrics.of(FLIGHT_RECORDER, metrics != null ? metrics : InstallMetrics.NOOP);
+    }
+
+    /**
+     * @param keepDownloadedWebdrivers keep downloaded archives in the download directory for later installations
+     */
+    public void setKeepDownloadedWebdrivers(boolean keepDownloadedWebdrivers) {
+        this.keepDownloadedWebdrivers = keepDownloadedWebdrivers;
     }
 
     public void initiateConfig(File installationDirectory) {
@@ -186,22 +565,121 @@ public class InstallWebDrivers {
         }
     }
 
-    private void cleanupDownloadsDirectory() throws InstallWebDriversException {
+    /**
+     * Adds a repository to load together with the configured repository url.
+     *
+     * @param repositoryUrl url of the repository json
+     * @param priority      higher priority wins for the same driver id and version
+     */
+    public void addRepository(URL repositoryUrl, int priority) {
+        additionalRepositories.add(new RepositorySource(repositoryUrl, priority));
+    }
+
+    /**
+     * Adds a remote Maven repository, e.g. an internal mirror, for drivers with a
+     * <code>mvn:groupId:artifactId:version[:type[:classifier]]</code> url.
+     * Repositories are tried in the order they were added, after the local
+     * repository. Without repositories Maven Central is used.
+     *
+     * @param repositoryUrl base url of the Maven repository
+     */
+    public void addMavenRepository(URL repositoryUrl) {
+        mavenRepositories.add(repositoryUrl);
+    }
+
+    List<URL> mavenRepositories() {
+        return mavenRepositories.isEmpty() ? Collections.singletonList(MavenArtifact.mavenCentral())
+                : new ArrayList<>(mavenRepositories);
+    }
+
+    /**
+     * Installs from a bundle written by {@link DriverBundle#prefetch(InstallWebDrivers, List, Path)}:
+     * the repository of the bundle replaces the repository url and the archives
+     * in the bundle are read from it instead of being downloaded. A bundle used
+     * before is closed, see {@link #closeBundle()}.
+     *
+     * @param bundleFile bundle file
+     * @throws InstallWebDriversException if the bundle could not be opened
+     */
+    public synchronized void useBundle(Path bundleFile) throws InstallWebDriversException {
+        DriverBundle openedBundle = null;
+        URL bundleRepositoryUrl;
         try {
-            FileUtils.deleteDirectory(downloadDirectory.toFile());
+            openedBundle = DriverBundle.open(bundleFile);
+            bundleRepositoryUrl = openedBundle.getRepositoryUrl();
         } catch (IOException e) {
-            throw new InstallWebDriversException("Failed to delete downloads directory:" + System.lineSeparator()
-                    + Utils.directoryToString(downloadDirectory), e);
+            closeQuietly(openedBundle);
+            throw new InstallWebDriversException("Failed to open driver bundle " + Utils.quote(bundleFile)
+                    + " cause of " + e.getMessage(), e);
         }
+        DriverBundle previousBundle = bundle;
+        bundle = openedBundle;
+        repositoryUrl = bundleRepositoryUrl;
+        closeQuietly(previousBundle);
+    }
+
+    /**
+     * Closes the bundle used by {@link #useBundle(Path)}, later installations
+     * download their archives again. Call it once no installation reads from
+     * the bundle anymore.
+     */
+    public synchronized void closeBundle() {
+        DriverBundle previousBundle = bundle;
+        bundle = null;
+        closeQuietly(previousBundle);
     }
 
-    private void cleanupTempDirectory() throws InstallWebDriversException {
+    private static void closeQuietly(DriverBundle bundle) {
+        if (bundle == null) {
+            return;
+        }
         try {
-            FileUtils.deleteDirectory(tempDirectory.toFile());
+            bundle.close();
         } catch (IOException e) {
-            throw new InstallWebDriversException("Failed to delete temp directory:" + System.lineSeparator()
-                    + Utils.directoryToString(tempDirectory), e);
+            logger.warn("  Failed to close driver bundle " + Utils.quote(bundle.getFile()) + " cause of " + e.getMessage());
         }
     }
 
+    /**
+     * Loads the repositories once and uses them for all later calls on this
+     * instance instead of loading them per call, e.g. for the duration of one
+     * build. Later changes of the repositories and of the repository
+     * configuration are not seen anymore.
+     *
+     * @throws InstallWebDriversException if the repository could not be loaded
+     */
+    public void pinRepository() throws InstallWebDriversException {
+        pinnedRepository = null;
+        pinnedRepository = loadRepository();
+    }
+
+    Repository loadRepository() throws InstallWebDriversException {
+        Repository pinnedRepository = this.pinnedRepository;
+        if (pinnedRepository != null) {
+            return pinnedRepository;
+        }
+        InstallMetrics.StageRecorder repositoryStage = metrics.start(InstallResult.STAGE_REPOSITORY, null);
+        if (repositoryUrl != null) {
+            repositoryStage.url(repositoryUrl.toString());
+        }
+        boolean loaded = false;
+        try {
+            Repository loadedRepository = new Repository().load(repositorySources());
+            loadedRepository.setBrowserVersionDetector(browserVersionDetector);
+            loadedRepository.setHostProfile(hostProfile);
+            loaded = true;
+            return loadedRepository;
+        } finally {
+            repositoryStage.end(loaded);
+        }
+    }
+
+    List<RepositorySource> repositorySources() {
+        List<RepositorySource> sources = new ArrayList<>();
+        if (repositoryUrl != null) {
+            sources.add(new RepositorySource(repositoryUrl));
+        }
+        sources.addAll(additionalRepositories);
+        return sources;
+    }
 }
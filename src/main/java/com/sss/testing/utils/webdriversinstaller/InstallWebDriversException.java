@@ -1,19 +1,68 @@
 package com.sss.testing.utils.webdriversinstaller;
 
+import java.nio.file.Path;
+
 public class InstallWebDriversException extends Exception {
+    /**
+     * Driver and directories listed in the message, only read when the
+     * message is rendered, see {@link #getMessage()}.
+     */
+    private final transient Driver driver;
+    private final transient Path downloadDirectory;
+    private final transient Path tempDirectory;
+    private final transient Path installationDirectory;
+    private transient volatile String debugInfo;
+
     public InstallWebDriversException(String message) {
         super(message);
+        this.driver = null;
+        this.downloadDirectory = null;
+        this.tempDirectory = null;
+        this.installationDirectory = null;
     }
 
     public InstallWebDriversException(String message, Exception cause) {
         super(message, cause);
+        this.driver = null;
+        this.downloadDirectory = null;
+        this.tempDirectory = null;
+        this.installationDirectory = null;
     }
 
     public InstallWebDriversException(String message, InstallWebDrivers mojo, Driver driver) {
-        this(message + Utils.debugInfo(mojo, driver));
+        this(message, null, mojo, driver);
     }
 
     public InstallWebDriversException(String message, Exception cause, InstallWebDrivers mojo, Driver driver) {
-        this(message + Utils.debugInfo(mojo, driver), cause);
+        super(message, cause);
+        this.driver = driver;
+        this.downloadDirectory = mojo.downloadDirectory;
+        this.tempDirectory = mojo.tempDirectory;
+        this.installationDirectory = mojo.installationDirectory.toPath();
+    }
+
+    /**
+     * The message with the driver and a listing of the download, temp and
+     * installation directories, if given. The directories are listed when the
+     * message is rendered the first time, not when the exception is thrown,
+     * so failures that are retried or handled cost no I/O. If they cannot be
+     * listed, e.g. a directory is a file by now, the plain message is returned.
+     */
+    @Override
+    public String getMessage() {
+        if (driver == null) {
+            return super.getMessage();
+        }
+        String debugInfo = this.debugInfo;
+        if (debugInfo == null) {
+            try {
+                debugInfo = Utils.debugInfo(driver, downloadDirectory, tempDirectory, installationDirectory);
+            } catch (RuntimeException e) {
+                // rendering the message must not throw, e.g. while logging the exception
+                return super.getMessage();
+            }
+            this.debugInfo = debugInfo;
+        }
+        return super.getMessage() + debugInfo;
     }
 }
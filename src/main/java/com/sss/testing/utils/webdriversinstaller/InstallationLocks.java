@@ -0,0 +1,322 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks shared by threads and processes working on the same installation
+ * directory, backed by file locks in its <code>.locks</code> directory.
+ * <p>
+ * An installation holds the shared lock of its installation directory and the
+ * exclusive lock of its driver id. Garbage collection removes versions of a
+ * driver id only while it holds the lock of the id, and leftovers of crashed
+ * installations only while it holds the installation directory exclusively, that
+ * is while no installation runs in it.
+ * <p>
+ * File locks belong to the whole JVM, so threads of this JVM are coordinated
+ * with in-memory locks before the file lock is taken.
+ */
+final class InstallationLocks {
+
+    static final String LOCKS_DIRECTORY = ".locks";
+
+    private static final String DIRECTORY_LOCK_FILE = ".installation-directory.lock";
+    private static final String LOCK_FILE_EXTENSION = ".lock";
+
+    private static final ConcurrentMap<Path, ReentrantLock> THREAD_LOCKS = new ConcurrentHashMap<>();
+    /**
+     * Installation directory locks held by this JVM by normalized lock file,
+     * guarded by itself. A second channel on a locked file would release its
+     * lock when closed.
+     */
+    private static final Map<Path, DirectoryLock> DIRECTORY_LOCKS = new HashMap<>();
+
+    private InstallationLocks() {
+    }
+
+    /**
+     * Locks a driver id for an installation, waits while another thread or
+     * process installs the driver id or collects it.
+     */
+    static Closeable lockDriver(Path installationDirectory, String driverId) throws IOException {
+        final Closeable directoryLock = lockDirectoryShared(installationDirectory);
+        try {
+            final Closeable driverLock = lockFile(driverLockFile(installationDirectory, driverId));
+            return new Closeable() {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        driverLock.close();
+                    } finally {
+                        directoryLock.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            directoryLock.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the lock of the driver id or null if it is held by an installation
+     */
+    static Closeable tryLockDriver(Path installationDirectory, String driverId) throws IOException {
+        return tryLockFile(driverLockFile(installationDirectory, driverId));
+    }
+
+    /**
+     * @return the exclusive lock of the installation directory or null while an
+     * installation runs in it
+     */
+    static Closeable tryLockDirectory(Path installationDirectory) throws IOException {
+        final Path lockFile = directoryLockFile(installationDirectory);
+        synchronized (DIRECTORY_LOCKS) {
+            if (DIRECTORY_LOCKS.containsKey(lockFile)) {
+                return null;
+            }
+            FileChannel channel = openLockFile(lockFile);
+            FileLock fileLock;
+            try {
+                fileLock = channel.tryLock();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            if (fileLock == null) {
+                channel.close();
+                return null;
+            }
+            DIRECTORY_LOCKS.put(lockFile, new DirectoryLock(channel, fileLock, -1));
+        }
+        return new Closeable() {
+            @Override
+            public void close() throws IOException {
+                synchronized (DIRECTORY_LOCKS) {
+                    DirectoryLock directoryLock = DIRECTORY_LOCKS.remove(lockFile);
+                    DIRECTORY_LOCKS.notifyAll();
+                    directoryLock.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Exclusively locks a lock file, waits while another thread or process holds it.
+     */
+    static Closeable lockFile(Path lockFile) throws IOException {
+        final ReentrantLock threadLock = threadLock(lockFile);
+        try {
+            threadLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for lock " + Utils.quote(lockFile));
+        }
+        try {
+            final FileChannel channel = openLockFile(lockFile);
+            try {
+                final FileLock fileLock = channel.lock();
+                return new Closeable() {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            fileLock.release();
+                            channel.close();
+                        } finally {
+                            threadLock.unlock();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the exclusive lock of the lock file or null if another thread or process holds it
+     */
+    static Closeable tryLockFile(Path lockFile) throws IOException {
+        final ReentrantLock threadLock = threadLock(lockFile);
+        if (!threadLock.tryLock()) {
+            return null;
+        }
+        try {
+            final FileChannel channel = openLockFile(lockFile);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            if (lock == null) {
+                channel.close();
+                threadLock.unlock();
+                return null;
+            }
+            final FileLock fileLock = lock;
+            return new Closeable() {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        fileLock.release();
+                        channel.close();
+                    } finally {
+                        threadLock.unlock();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    static Path locksDirectory(Path directory) {
+        return directory.resolve(LOCKS_DIRECTORY);
+    }
+
+    private static Path directoryLockFile(Path installationDirectory) {
+        return locksDirectory(installationDirectory).resolve(DIRECTORY_LOCK_FILE).toAbsolutePath().normalize();
+    }
+
+    private static Path driverLockFile(Path installationDirectory, String driverId) {
+        return locksDirectory(installationDirectory).resolve(driverId + LOCK_FILE_EXTENSION);
+    }
+
+    /**
+     * Installations of this JVM share one shared file lock of the installation
+     * directory, the last one releases it. The file lock is taken outside of
+     * the monitor, it waits while another process collects the directory.
+     */
+    private static Closeable lockDirectoryShared(Path installationDirectory) throws IOException {
+        final Path lockFile = directoryLockFile(installationDirectory);
+        DirectoryLock acquiring;
+        synchronized (DIRECTORY_LOCKS) {
+            DirectoryLock directoryLock = DIRECTORY_LOCKS.get(lockFile);
+            while (directoryLock != null && (directoryLock.holders < 0 || directoryLock.fileLock == null)) {
+                // collected by this JVM or being locked by another thread
+                try {
+                    DIRECTORY_LOCKS.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for lock " + Utils.quote(lockFile));
+                }
+                directoryLock = DIRECTORY_LOCKS.get(lockFile);
+            }
+            if (directoryLock != null) {
+                directoryLock.holders++;
+                return sharedDirectoryLock(lockFile);
+            }
+            acquiring = new DirectoryLock(null, null, 0);
+            DIRECTORY_LOCKS.put(lockFile, acquiring);
+        }
+
+        FileChannel channel = null;
+        FileLock fileLock = null;
+        try {
+            channel = openLockFile(lockFile);
+            fileLock = channel.lock(0, Long.MAX_VALUE, true);
+        } finally {
+            synchronized (DIRECTORY_LOCKS) {
+                if (fileLock != null) {
+                    acquiring.channel = channel;
+                    acquiring.fileLock = fileLock;
+                    acquiring.holders++;
+                } else {
+                    DIRECTORY_LOCKS.remove(lockFile);
+                    closeQuietly(channel);
+                }
+                DIRECTORY_LOCKS.notifyAll();
+            }
+        }
+        return sharedDirectoryLock(lockFile);
+    }
+
+    private static Closeable sharedDirectoryLock(final Path lockFile) {
+        return new Closeable() {
+            @Override
+            public void close() throws IOException {
+                synchronized (DIRECTORY_LOCKS) {
+                    DirectoryLock directoryLock = DIRECTORY_LOCKS.get(lockFile);
+                    if (--directoryLock.holders == 0) {
+                        DIRECTORY_LOCKS.remove(lockFile);
+                        DIRECTORY_LOCKS.notifyAll();
+                        directoryLock.release();
+                    }
+                }
+            }
+        };
+    }
+
+    private static ReentrantLock threadLock(Path lockFile) {
+        Path key = lockFile.toAbsolutePath().normalize();
+        ReentrantLock lock = THREAD_LOCKS.get(key);
+        if (lock == null) {
+            THREAD_LOCKS.putIfAbsent(key, new ReentrantLock());
+            lock = THREAD_LOCKS.get(key);
+        }
+        return lock;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the failure to lock is reported instead
+        }
+    }
+
+    private static FileChannel openLockFile(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static final class DirectoryLock {
+        /**
+         * Null while the thread that registered the lock still waits for it.
+         */
+        private FileChannel channel;
+        private FileLock fileLock;
+        /**
+         * Number of installations holding the shared lock, -1 if held exclusively.
+         */
+        private int holders;
+
+        DirectoryLock(FileChannel channel, FileLock fileLock, int holders) {
+            this.channel = channel;
+            this.fileLock = fileLock;
+            this.holders = holders;
+        }
+
+        void release() throws IOException {
+            try {
+                fileLock.release();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
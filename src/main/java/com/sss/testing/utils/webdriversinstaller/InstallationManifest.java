@@ -0,0 +1,300 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the driver versions installed in an installation directory: the
+ * resolved driver, its installed path and every installed file with size,
+ * modification time, file key and content hash, plus the current version of
+ * each driver id. There is one manifest per installation directory and JVM, it
+ * is read once and read again only when another process rewrote it. The
+ * manifest file is replaced atomically on every change.
+ */
+class InstallationManifest {
+    private static final Logger logger = LoggerFactory.getLogger(InstallationManifest.class);
+
+    static final String MANIFEST_FILE_NAME = ".webdrivers-manifest.json";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final ConcurrentMap<Path, InstallationManifest> MANIFESTS = new ConcurrentHashMap<>();
+
+    private final Path installationDirectory;
+    private final Path manifestFile;
+    private Contents contents;
+    private FileTime loadedModified;
+
+    private InstallationManifest(Path installationDirectory) {
+        this.installationDirectory = installationDirectory;
+        this.manifestFile = installationDirectory.resolve(MANIFEST_FILE_NAME);
+    }
+
+    static InstallationManifest forDirectory(Path installationDirectory) {
+        Path directory = installationDirectory.toAbsolutePath().normalize();
+        InstallationManifest manifest = MANIFESTS.get(directory);
+        if (manifest == null) {
+            MANIFESTS.putIfAbsent(directory, new InstallationManifest(directory));
+            manifest = MANIFESTS.get(directory);
+        }
+        return manifest;
+    }
+
+    /**
+     * @return key of a driver version, e.g. chromedriver-linux-64bit-2.32
+     */
+    static String versionKey(Driver driver) {
+        return driver.getDriverDownloadDirectoryName();
+    }
+
+    static String versionKey(ResolvedDriver driver) {
+        return versionKey(driver.toDriver());
+    }
+
+    /**
+     * @param useExtendedAttributes cache file hashes in extended attributes, see {@link FileHashes}
+     * @return true if the same resolved driver version is recorded and all its
+     * files are unchanged, it need not be the current version
+     */
+    boolean isInstalled(Driver driver, boolean useExtendedAttributes) throws IOException {
+        InstalledDriver installed = getInstalledDriver(driver);
+        if (installed == null || !installed.getDriver().equals(ResolvedDriver.of(driver))) {
+            return false;
+        }
+        return verify(installed, useExtendedAttributes);
+    }
+
+    /**
+     * Checks that the files of a recorded driver are unchanged. Files with the
+     * recorded size, modification time and file key are trusted without reading
+     * them, all others are hashed and compared with the recorded hash. Files that
+     * were touched or copied but still have the recorded content are recorded
+     * again with their new metadata, so they are not hashed again next time.
+     * Hashing runs without holding the manifest, several drivers can be verified
+     * in parallel.
+     *
+     * @return true if all files exist with the recorded content
+     */
+    boolean verify(InstalledDriver installed, boolean useExtendedAttributes) throws IOException {
+        List<InstalledDriver.InstalledFile> verifiedFiles = new ArrayList<>();
+        boolean metadataChanged = false;
+        for (InstalledDriver.InstalledFile file : installed.getFiles()) {
+            Path path = installationDirectory.resolve(file.getPath());
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                logger.info("  Installed file " + Utils.quote(path) + " is missing");
+                return false;
+            }
+            if (attributes.size() != file.getSize()) {
+                logger.info("  Installed file " + Utils.quote(path) + " changed its size");
+                return false;
+            }
+            String fileKey = FileHashes.fileKey(attributes);
+            if (attributes.lastModifiedTime().toMillis() == file.getLastModified()
+                    && (file.getFileKey() == null || file.getFileKey().equals(fileKey))) {
+                verifiedFiles.add(file);
+                continue;
+            }
+            if (file.getSha256() == null
+                    || !file.getSha256().equals(FileHashes.sha256(path, attributes, useExtendedAttributes))) {
+                logger.info("  Installed file " + Utils.quote(path) + " changed its content");
+                return false;
+            }
+            verifiedFiles.add(new InstalledDriver.InstalledFile(file.getPath(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis(), fileKey, file.getSha256()));
+            metadataChanged = true;
+        }
+        if (metadataChanged) {
+            refresh(installed, verifiedFiles);
+        }
+        return true;
+    }
+
+    synchronized boolean contains(Driver driver) throws IOException {
+        return contents().drivers.containsKey(versionKey(driver));
+    }
+
+    /**
+     * @return the recorded version of the driver or null if not recorded
+     */
+    synchronized InstalledDriver getInstalledDriver(Driver driver) throws IOException {
+        return contents().drivers.get(versionKey(driver));
+    }
+
+    /**
+     * @return the current version of the driver id or null if none is current
+     */
+    synchronized InstalledDriver getCurrentDriver(String driverId) throws IOException {
+        String versionKey = contents().current.get(driverId);
+        return versionKey == null ? null : contents().drivers.get(versionKey);
+    }
+
+    synchronized boolean isCurrent(Driver driver) throws IOException {
+        return versionKey(driver).equals(contents().current.get(driver.getId()));
+    }
+
+    /**
+     * Records the driver version with all files below the installed path and
+     * their hashes.
+     *
+     * @param installedPath         installed file or directory of this version
+     * @param useExtendedAttributes cache file hashes in extended attributes, see {@link FileHashes}
+     */
+    void record(Driver driver, Path installedPath, final boolean useExtendedAttributes) throws IOException {
+        final List<InstalledDriver.InstalledFile> files = new ArrayList<>();
+        Files.walkFileTree(installedPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                files.add(new InstalledDriver.InstalledFile(
+                        relativize(file),
+                        attributes.size(),
+                        attributes.lastModifiedTime().toMillis(),
+                        FileHashes.fileKey(attributes),
+                        FileHashes.sha256(file, attributes, useExtendedAttributes)));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        InstalledDriver installed = new InstalledDriver(ResolvedDriver.of(driver), relativize(installedPath), files,
+                System.currentTimeMillis());
+        synchronized (this) {
+            reload();
+            contents().drivers.put(versionKey(driver), installed);
+            write();
+        }
+    }
+
+    /**
+     * Makes the recorded driver version the current version of its driver id.
+     */
+    synchronized void setCurrent(Driver driver) throws IOException {
+        reload();
+        contents().current.put(driver.getId(), versionKey(driver));
+        write();
+    }
+
+    /**
+     * Removes a driver version, if it is the current version its driver id has
+     * no current version afterwards.
+     */
+    synchronized void remove(String versionKey) throws IOException {
+        reload();
+        InstalledDriver removed = contents().drivers.remove(versionKey);
+        if (removed != null) {
+            contents().current.values().remove(versionKey);
+            write();
+        }
+    }
+
+    /**
+     * @return all recorded driver versions
+     */
+    synchronized List<InstalledDriver> getInstalledDrivers() throws IOException {
+        return new ArrayList<>(contents().drivers.values());
+    }
+
+    /**
+     * Replaces the files of a verified driver unless it was reinstalled meanwhile.
+     */
+    private synchronized void refresh(InstalledDriver verified, List<InstalledDriver.InstalledFile> verifiedFiles)
+            throws IOException {
+        reload();
+        String versionKey = versionKey(verified.getDriver());
+        InstalledDriver recorded = contents().drivers.get(versionKey);
+        if (recorded != null && recorded.getInstalledAt() == verified.getInstalledAt()
+                && recorded.getDriver().equals(verified.getDriver())) {
+            contents().drivers.put(versionKey, verified.withFiles(verifiedFiles));
+            write();
+        }
+    }
+
+    private String relativize(Path path) {
+        return installationDirectory.relativize(path.toAbsolutePath().normalize()).toString();
+    }
+
+    private Contents contents() throws IOException {
+        FileTime modified = Files.exists(manifestFile) ? Files.getLastModifiedTime(manifestFile) : null;
+        if (contents == null || (modified != null && !modified.equals(loadedModified))) {
+            contents = read();
+            loadedModified = modified;
+        }
+        return contents;
+    }
+
+    /**
+     * Reads the manifest before a change, keeping the window in which changes of
+     * other processes get lost small.
+     */
+    private void reload() throws IOException {
+        contents = null;
+        contents();
+    }
+
+    private Contents read() throws IOException {
+        if (!Files.isRegularFile(manifestFile)) {
+            return new Contents();
+        }
+        try {
+            String json = new String(Files.readAllBytes(manifestFile), StandardCharsets.UTF_8);
+            Contents read = GSON.fromJson(json, Contents.class);
+            // manifests of in-place installations have neither field, their drivers are adopted again
+            if (read == null) {
+                return new Contents();
+            }
+            if (read.drivers == null) {
+                read.drivers = new TreeMap<>();
+            }
+            if (read.current == null) {
+                read.current = new TreeMap<>();
+            }
+            return read;
+        } catch (JsonSyntaxException e) {
+            // the drivers are reinstalled and recorded again
+            logger.warn("  Ignoring corrupt installation manifest " + Utils.quote(manifestFile));
+            return new Contents();
+        }
+    }
+
+    private void write() throws IOException {
+        Files.createDirectories(installationDirectory);
+        Path tempFile = Files.createTempFile(installationDirectory, MANIFEST_FILE_NAME, ".tmp");
+        try {
+            Files.write(tempFile, GSON.toJson(contents).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        loadedModified = Files.getLastModifiedTime(manifestFile);
+    }
+
+    private static class Contents {
+        /**
+         * Installed driver versions by version key.
+         */
+        private TreeMap<String, InstalledDriver> drivers = new TreeMap<>();
+        /**
+         * Version key of the current version by driver id.
+         */
+        private TreeMap<String, String> current = new TreeMap<>();
+    }
+}
@@ -0,0 +1,111 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A driver version recorded in the installation manifest of an installation
+ * directory.
+ */
+public final class InstalledDriver {
+
+    private final ResolvedDriver driver;
+    private final String path;
+    private final List<InstalledFile> files;
+    private final long installedAt;
+
+    InstalledDriver(ResolvedDriver driver, String path, List<InstalledFile> files, long installedAt) {
+        this.driver = driver;
+        this.path = path;
+        this.files = new ArrayList<>(files);
+        this.installedAt = installedAt;
+    }
+
+    InstalledDriver withFiles(List<InstalledFile> verifiedFiles) {
+        return new InstalledDriver(driver, path, verifiedFiles, installedAt);
+    }
+
+    public ResolvedDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return the versioned file or directory of this driver version relative to
+     * the installation directory, it stays valid while other versions are installed
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return installed files, paths are relative to the installation directory
+     */
+    public List<InstalledFile> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @return installation time in milliseconds since the epoch
+     */
+    public long getInstalledAt() {
+        return installedAt;
+    }
+
+    @Override
+    public String toString() {
+        return driver.getId() + " version " + driver.getVersion() + " " + files;
+    }
+
+    /**
+     * An installed file with its content hash and the metadata the hash was
+     * computed for. While size, modification time and file key are unchanged the
+     * content is assumed to be unchanged, too.
+     */
+    public static final class InstalledFile {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+        private final String sha256;
+
+        InstalledFile(String path, long size, long lastModified, String fileKey, String sha256) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+            this.sha256 = sha256;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return identity of the file on its file system, the inode on unix, or null if not available
+         */
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        /**
+         * @return hex encoded SHA-256 of the content, null for files recorded by older versions
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.net.URI;
+
+/**
+ * Emits a {@link StageEvent} per stage run, see {@link InstallMetrics#flightRecorder()}.
+ * Only used by {@link LazyJfrInstallMetrics} once the flight recorder is
+ * initialized, JVMs without JFR lack the event classes.
+ */
+final class JfrInstallMetrics implements InstallMetrics {
+
+    private final EventType eventType = EventType.getEventType(StageEvent.class);
+
+    private JfrInstallMetrics() {
+    }
+
+    static InstallMetrics create() {
+        return new JfrInstallMetrics();
+    }
+
+    /**
+     * @return true once a recording was started, unlike
+     * {@link FlightRecorder#isAvailable()} without initializing JFR
+     */
+    static boolean isRecorderInitialized() {
+        return FlightRecorder.isInitialized();
+    }
+
+    @Override
+    public StageRecorder start(String stage, String driverId) {
+        // true only while a recording enables the event
+        if (!eventType.isEnabled()) {
+            return StageRecorder.NOOP;
+        }
+        return new Recorder(stage, driverId);
+    }
+
+    @Name("com.sss.testing.webdriversinstaller.InstallStage")
+    @Label("Driver Installation Stage")
+    @Category({"WebDrivers Installer"})
+    @Description("A stage of a driver installation: repository, resolve, download, validate, extract or install")
+    @StackTrace(false)
+    static final class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Driver")
+        String driverId;
+
+        @Label("Host")
+        @Description("Host of the url the stage read from")
+        String host;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Cache Outcome")
+        String cacheOutcome;
+
+        @Label("Retries")
+        int retries;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    private static final class Recorder implements StageRecorder {
+        private final StageEvent event = new StageEvent();
+
+        private Recorder(String stage, String driverId) {
+            event.stage = stage;
+            event.driverId = driverId;
+            event.begin();
+        }
+
+        @Override
+        public void url(String url) {
+            try {
+                // null for mvn: and jar: urls
+                event.host = url != null ? URI.create(url).getHost() : null;
+            } catch (IllegalArgumentException e) {
+                event.host = null;
+            }
+        }
+
+        @Override
+        public void addBytes(long bytes) {
+            event.bytes += bytes;
+        }
+
+        @Override
+        public void cacheOutcome(CacheOutcome outcome) {
+            event.cacheOutcome = outcome.name();
+        }
+
+        @Override
+        public void retry() {
+            event.retries++;
+        }
+
+        @Override
+        public void end(boolean succeeded) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+}
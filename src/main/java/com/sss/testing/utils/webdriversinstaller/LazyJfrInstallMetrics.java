@@ -0,0 +1,47 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+/**
+ * Defers everything JFR to the first stage started after the flight recorder
+ * was initialized, e.g. by <code>-XX:StartFlightRecording</code> or
+ * <code>jcmd JFR.start</code>. Until then no event class is loaded and
+ * starting a stage costs one check, see {@link InstallMetrics#flightRecorder()}.
+ */
+final class LazyJfrInstallMetrics implements InstallMetrics {
+
+    static final InstallMetrics INSTANCE = new LazyJfrInstallMetrics();
+
+    /**
+     * The JFR metrics, null until a recording exists.
+     */
+    private volatile InstallMetrics jfrMetrics;
+    /**
+     * True on JVMs without JFR.
+     */
+    private volatile boolean unavailable;
+
+    private LazyJfrInstallMetrics() {
+    }
+
+    @Override
+    public StageRecorder start(String stage, String driverId) {
+        InstallMetrics jfrMetrics = this.jfrMetrics;
+        if (jfrMetrics == null) {
+            if (unavailable) {
+                return StageRecorder.NOOP;
+            }
+            try {
+                if (!JfrInstallMetrics.isRecorderInitialized()) {
+                    return StageRecorder.NOOP;
+                }
+                // a concurrent stage may create another one, both emit the same events
+                jfrMetrics = JfrInstallMetrics.create();
+            } catch (LinkageError e) {
+                // e.g. Java 8 without the jdk.jfr module
+                unavailable = true;
+                return StageRecorder.NOOP;
+            }
+            this.jfrMetrics = jfrMetrics;
+        }
+        return jfrMetrics.start(stage, driverId);
+    }
+}
@@ -0,0 +1,191 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * A driver archive published as Maven artifact, referenced by the driver url
+ * <code>mvn:groupId:artifactId:version[:type[:classifier]]</code>. The type
+ * defaults to <code>zip</code>. <code>${name}</code>, <code>${platform}</code>,
+ * <code>${bit}</code> and <code>${version}</code> are replaced with the values of
+ * the driver, so one url maps all platforms and bit widths of a driver, e.g.
+ * <code>mvn:com.example.webdrivers:${name}:${version}:zip:${platform}${bit}</code>.
+ * <p>
+ * Artifacts are taken from the local Maven repository if their
+ * <code>.sha1</code> checksum there matches, otherwise downloaded from the remote
+ * repositories, verified against the remote checksum and stored in the local
+ * repository together with it.
+ */
+final class MavenArtifact {
+
+    static final String URL_PREFIX = "mvn:";
+    static final String DEFAULT_TYPE = "zip";
+    static final String MAVEN_CENTRAL_URL = "https://repo.maven.apache.org/maven2/";
+    static final String CHECKSUM_EXTENSION = ".sha1";
+
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String type;
+    private final String classifier;
+
+    private MavenArtifact(String groupId, String artifactId, String version, String type, String classifier) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.type = type;
+        this.classifier = classifier;
+    }
+
+    static boolean isMavenUrl(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    /**
+     * @return the artifact of the driver url with the placeholders replaced
+     * @throws IllegalArgumentException if the url is no valid Maven url
+     */
+    static MavenArtifact of(Driver driver) {
+        String coordinates = driver.getUrl().substring(URL_PREFIX.length())
+                .replace("${name}", String.valueOf(driver.getName()))
+                .replace("${platform}", String.valueOf(driver.getPlatform()))
+                .replace("${bit}", String.valueOf(driver.getBit()))
+                .replace("${version}", String.valueOf(driver.getVersion()));
+        String[] parts = coordinates.split(":", -1);
+        if (parts.length < 3 || parts.length > 5) {
+            throw new IllegalArgumentException("Invalid Maven url " + driver.getUrl()
+                    + ", expected mvn:groupId:artifactId:version[:type[:classifier]]");
+        }
+        for (String part : parts) {
+            if (part.isEmpty() || part.contains("/") || part.contains("${")) {
+                throw new IllegalArgumentException("Invalid Maven url " + driver.getUrl() + " for " + driver.getId());
+            }
+        }
+        return new MavenArtifact(parts[0], parts[1], parts[2], parts.length > 3 ? parts[3] : DEFAULT_TYPE,
+                parts.length > 4 ? parts[4] : null);
+    }
+
+    /**
+     * @return the local repository configured with <code>maven.repo.local</code>,
+     * <code>~/.m2/repository</code> by default
+     */
+    static Path defaultLocalRepository() {
+        String localRepository = System.getProperty("maven.repo.local");
+        return localRepository != null && !localRepository.isEmpty()
+                ? Paths.get(localRepository)
+                : Paths.get(System.getProperty("user.home"), ".m2", "repository");
+    }
+
+    String getFileName() {
+        return artifactId + "-" + version + (classifier != null ? "-" + classifier : "") + "." + type;
+    }
+
+    /**
+     * @return path of the artifact relative to a repository
+     */
+    String getPath() {
+        return groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + getFileName();
+    }
+
+    Path localFile(Path localRepository) {
+        return localRepository.resolve(getPath());
+    }
+
+    String remoteUrl(URL repository) {
+        String base = repository.toString();
+        return (base.endsWith("/") ? base : base + "/") + getPath();
+    }
+
+    /**
+     * @return true if the file exists and matches its checksum file, files
+     * installed without checksum file are trusted like Maven does
+     */
+    static boolean isVerified(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        String expected = readChecksum(file.resolveSibling(file.getFileName() + CHECKSUM_EXTENSION));
+        return expected == null || expected.equals(sha1(file));
+    }
+
+    /**
+     * Stores a download in the local repository next to the checksum published
+     * by the remote repository, both are replaced atomically. Without a
+     * published checksum no checksum file is written, a checksum computed from
+     * the download itself would vouch for a file nobody verified.
+     *
+     * @param checksum published checksum the download was verified against, null if there is none
+     */
+    static void store(Path downloadedFile, Path localFile, String checksum) throws IOException {
+        Files.createDirectories(localFile.getParent());
+        Path checksumFile = localFile.resolveSibling(localFile.getFileName() + CHECKSUM_EXTENSION);
+        Path tempFile = localFile.resolveSibling(localFile.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        Path tempChecksumFile = localFile.resolveSibling(checksumFile.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(downloadedFile, tempFile);
+            if (checksum == null) {
+                // a checksum of the replaced file must not stay next to the new one
+                Files.deleteIfExists(checksumFile);
+                Files.move(tempFile, localFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            }
+            Files.write(tempChecksumFile, checksum.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, localFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempChecksumFile, checksumFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+            Files.deleteIfExists(tempChecksumFile);
+        }
+    }
+
+    /**
+     * @return the checksum in a <code>.sha1</code> file, which may be followed by the file name, or null if there is none
+     */
+    static String readChecksum(Path checksumFile) throws IOException {
+        if (!Files.isRegularFile(checksumFile)) {
+            return null;
+        }
+        String content = new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8).trim();
+        return content.isEmpty() ? null : content.split("\\s+")[0].toLowerCase();
+    }
+
+    static String sha1(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return FileHashes.toHex(digest.digest());
+    }
+
+    static URL mavenCentral() {
+        try {
+            return new URL(MAVEN_CENTRAL_URL);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return groupId + ":" + artifactId + ":" + version + ":" + type + (classifier != null ? ":" + classifier : "");
+    }
+}
@@ -0,0 +1,180 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and duration histograms per stage in the Prometheus text format,
+ * served by {@link #scrape()}:
+ * <ul>
+ * <li><code>webdrivers_installer_stage_duration_seconds</code> histogram of the stage durations</li>
+ * <li><code>webdrivers_installer_stage_failures_total</code> failed stage runs</li>
+ * <li><code>webdrivers_installer_stage_bytes_total</code> bytes downloaded and validated</li>
+ * <li><code>webdrivers_installer_stage_cache_total</code> stage runs by cache outcome</li>
+ * <li><code>webdrivers_installer_stage_retries_total</code> retried requests</li>
+ * </ul>
+ * All are labelled with the stage, not with the driver, to keep the number of
+ * series small.
+ */
+public final class PrometheusInstallMetrics implements InstallMetrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "webdrivers_installer_stage_";
+    /**
+     * Upper bounds of the duration buckets in seconds, from a cached repository
+     * to a slow download.
+     */
+    private static final double[] DURATION_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    private final ConcurrentMap<String, StageMetrics> stages = new ConcurrentHashMap<>();
+
+    @Override
+    public StageRecorder start(String stage, String driverId) {
+        StageMetrics stageMetrics = stages.get(stage);
+        if (stageMetrics == null) {
+            StageMetrics newStageMetrics = new StageMetrics();
+            stageMetrics = stages.putIfAbsent(stage, newStageMetrics);
+            if (stageMetrics == null) {
+                stageMetrics = newStageMetrics;
+            }
+        }
+        return new Recorder(stageMetrics, System.nanoTime());
+    }
+
+    /**
+     * @return all metrics in the Prometheus text format, see {@link #CONTENT_TYPE}
+     */
+    public String scrape() {
+        // sorted for a stable output
+        Map<String, StageMetrics> sortedStages = new TreeMap<>(stages);
+        StringBuilder out = new StringBuilder();
+
+        header(out, "duration_seconds", "histogram", "Duration of the installation stages.");
+        for (Map.Entry<String, StageMetrics> stage : sortedStages.entrySet()) {
+            StageMetrics metrics = stage.getValue();
+            String label = "stage=\"" + escape(stage.getKey()) + "\"";
+            long cumulativeCount = 0;
+            for (int i = 0; i < DURATION_BUCKETS.length; i++) {
+                cumulativeCount += metrics.buckets[i].sum();
+                sample(out, "duration_seconds_bucket", label + ",le=\"" + DURATION_BUCKETS[i] + "\"", cumulativeCount);
+            }
+            // read after the buckets, so +Inf is never below the last bucket
+            long count = cumulativeCount + metrics.buckets[DURATION_BUCKETS.length].sum();
+            sample(out, "duration_seconds_bucket", label + ",le=\"+Inf\"", count);
+            out.append(PREFIX).append("duration_seconds_sum{").append(label).append("} ")
+                    .append(metrics.durationSeconds.sum()).append('\n');
+            sample(out, "duration_seconds_count", label, count);
+        }
+
+        header(out, "failures_total", "counter", "Failed runs of the installation stages.");
+        for (Map.Entry<String, StageMetrics> stage : sortedStages.entrySet()) {
+            sample(out, "failures_total", "stage=\"" + escape(stage.getKey()) + "\"", stage.getValue().failures.sum());
+        }
+
+        header(out, "bytes_total", "counter", "Bytes downloaded and validated by the installation stages.");
+        for (Map.Entry<String, StageMetrics> stage : sortedStages.entrySet()) {
+            sample(out, "bytes_total", "stage=\"" + escape(stage.getKey()) + "\"", stage.getValue().bytes.sum());
+        }
+
+        header(out, "cache_total", "counter", "Runs of the installation stages by cache outcome.");
+        for (Map.Entry<String, StageMetrics> stage : sortedStages.entrySet()) {
+            for (CacheOutcome outcome : CacheOutcome.values()) {
+                sample(out, "cache_total", "stage=\"" + escape(stage.getKey()) + "\",outcome=\""
+                        + outcome.name().toLowerCase() + "\"", stage.getValue().cacheOutcomes[outcome.ordinal()].sum());
+            }
+        }
+
+        header(out, "retries_total", "counter", "Retried requests of the installation stages.");
+        for (Map.Entry<String, StageMetrics> stage : sortedStages.entrySet()) {
+            sample(out, "retries_total", "stage=\"" + escape(stage.getKey()) + "\"", stage.getValue().retries.sum());
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class StageMetrics {
+        /**
+         * Runs per bucket, the last one for runs above the largest bucket.
+         */
+        private final LongAdder[] buckets = new LongAdder[DURATION_BUCKETS.length + 1];
+        private final DoubleAdder durationSeconds = new DoubleAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder[] cacheOutcomes = new LongAdder[CacheOutcome.values().length];
+
+        private StageMetrics() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+            for (int i = 0; i < cacheOutcomes.length; i++) {
+                cacheOutcomes[i] = new LongAdder();
+            }
+        }
+
+        private void observe(double seconds) {
+            int bucket = 0;
+            while (bucket < DURATION_BUCKETS.length && seconds > DURATION_BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            durationSeconds.add(seconds);
+        }
+    }
+
+    private static final class Recorder implements StageRecorder {
+        private final StageMetrics metrics;
+        private final long start;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private Recorder(StageMetrics metrics, long start) {
+            this.metrics = metrics;
+            this.start = start;
+        }
+
+        @Override
+        public void addBytes(long bytes) {
+            metrics.bytes.add(bytes);
+        }
+
+        @Override
+        public void cacheOutcome(CacheOutcome outcome) {
+            metrics.cacheOutcomes[outcome.ordinal()].increment();
+        }
+
+        @Override
+        public void retry() {
+            metrics.retries.increment();
+        }
+
+        @Override
+        public void end(boolean succeeded) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            metrics.observe((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1));
+            if (!succeeded) {
+                metrics.failures.increment();
+            }
+        }
+    }
+}
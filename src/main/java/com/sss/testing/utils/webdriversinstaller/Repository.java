@@ -1,21 +1,39 @@
 package com.sss.testing.utils.webdriversinstaller;
 
-import ch.lambdaj.function.compare.ArgumentComparator;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
-import org.apache.commons.collections.ComparatorUtils;
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static ch.lambdaj.Lambda.collect;
 import static ch.lambdaj.Lambda.having;
@@ -23,7 +41,6 @@ import static ch.lambdaj.Lambda.on;
 import static ch.lambdaj.Lambda.select;
 import static ch.lambdaj.Lambda.selectDistinct;
 import static ch.lambdaj.Lambda.selectMax;
-import static ch.lambdaj.Lambda.sort;
 import static org.apache.commons.lang3.CharEncoding.UTF_8;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -31,10 +48,134 @@ import static org.hamcrest.Matchers.equalToIgnoringCase;
 import static org.hamcrest.Matchers.is;
 
 class Repository {
+    private static final Logger logger = LoggerFactory.getLogger(Repository.class);
+
+    static final int REPOSITORY_CONNECT_TIMEOUT = 10 * 1000; // 10 seconds
+    static final int REPOSITORY_READ_TIMEOUT = 30 * 1000; // 30 seconds
+    static final long REPOSITORY_LOAD_TIMEOUT = 60 * 1000; // 1 min for all sources together
+
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final Comparator<Driver> BY_ID_AND_VERSION = new Comparator<Driver>() {
+        @Override
+        public int compare(Driver left, Driver right) {
+            int byId = left.getId().compareTo(right.getId());
+            if (byId != 0) {
+                return byId;
+            }
+            if (left.getVersion() == null || right.getVersion() == null) {
+                return left.getVersion() == null ? (right.getVersion() == null ? 0 : -1) : 1;
+            }
+            return left.comparableVersion().compareTo(right.comparableVersion());
+        }
+    };
 
     private List<Driver> drivers;
 
+    /**
+     * Drivers grouped by id, each group sorted by version.
+     */
+    private transient Map<String, List<Driver>> driversById;
+
+    private transient BrowserVersionDetector browserVersionDetector;
+
+    private transient HostProfile hostProfile;
+
+    Repository() {
+    }
+
+    private Repository(List<Driver> sortedDrivers) {
+        this(sortedDrivers, indexDrivers(sortedDrivers));
+    }
+
+    private Repository(List<Driver> sortedDrivers, Map<String, List<Driver>> driversById) {
+        this.drivers = sortedDrivers;
+        this.driversById = driversById;
+    }
+
+    /**
+     * Loads all sources concurrently and merges them into one repository. For
+     * the same driver id and version the entry of the source with the highest
+     * priority is kept. A source that fails or does not answer within
+     * {@link #REPOSITORY_LOAD_TIMEOUT} is skipped, loading only fails when no
+     * source could be loaded at all.
+     */
+    Repository load(List<RepositorySource> sources) throws InstallWebDriversException {
+        if (sources.isEmpty()) {
+            throw new InstallWebDriversException("No repository source configured");
+        }
+        if (sources.size() == 1) {
+            return load(sources.get(0).getUrl());
+        }
+
+        List<RepositorySource> sourcesByPriority = new ArrayList<>(sources);
+        // stable sort, keeps declaration order for equal priorities
+        sourcesByPriority.sort((left, right) -> Integer.compare(right.getPriority(), left.getPriority()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(sourcesByPriority.size(),
+                Utils.daemonThreadFactory("webdrivers-installer-repository-loader"));
+        try {
+            List<Future<Repository>> loads = new ArrayList<>();
+            for (final RepositorySource source : sourcesByPriority) {
+                loads.add(executor.submit(new Callable<Repository>() {
+                    @Override
+                    public Repository call() throws Exception {
+                        return load(source.getUrl());
+                    }
+                }));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPOSITORY_LOAD_TIMEOUT);
+            Map<String, Driver> mergedDrivers = new LinkedHashMap<>();
+            Exception lastFailure = null;
+            int loadedSources = 0;
+            for (int i = 0; i < sourcesByPriority.size(); i++) {
+                RepositorySource source = sourcesByPriority.get(i);
+                Repository repository;
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    repository = loads.get(i).get(remaining, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    loads.get(i).cancel(true);
+                    logger.warn("  Skipping repository " + source + " since it did not load in time");
+                    lastFailure = e;
+                    continue;
+                } catch (ExecutionException e) {
+                    logger.warn("  Skipping repository " + source + " cause of " + e.getCause().getMessage());
+                    lastFailure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InstallWebDriversException("Interrupted while loading repositories " + sources, e);
+                }
+                loadedSources++;
+                for (Driver driver : repository.drivers) {
+                    String key = driver.getDriverDownloadDirectoryName().toLowerCase();
+                    if (!mergedDrivers.containsKey(key)) {
+                        mergedDrivers.put(key, driver);
+                    }
+                }
+            }
+
+            if (loadedSources == 0) {
+                throw new InstallWebDriversException("Failed to load any of the repositories " + sources, lastFailure);
+            }
+
+            return new Repository(sortDrivers(new ArrayList<>(mergedDrivers.values())));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     Repository load(URL repositoryUrl) throws InstallWebDriversException {
+        RepositorySnapshot snapshot = readSnapshot(repositoryUrl);
+        if (snapshot != null) {
+            return new Repository(snapshot.getDrivers(), snapshot.getDriversById());
+        }
+        return loadJson(repositoryUrl);
+    }
+
+    Repository loadJson(URL repositoryUrl) throws InstallWebDriversException {
         String repositoryAsString;
         try {
             repositoryAsString = downloadAsString(repositoryUrl);
@@ -50,18 +191,101 @@ class Repository {
             throw new InstallWebDriversException("Failed to parse repository json " + repositoryAsString, e);
         }
 
-        repository.drivers = sortDrivers(repository.drivers);
+        return new Repository(sortDrivers(repository.drivers));
+    }
+
+    /**
+     * @param browserVersionDetector used for specs with browser version
+     *                               {@value BrowserVersionDetector#INSTALLED}, without
+     *                               a detector those specs resolve to the latest version
+     */
+    void setBrowserVersionDetector(BrowserVersionDetector browserVersionDetector) {
+        this.browserVersionDetector = browserVersionDetector;
+    }
+
+    /**
+     * @param hostProfile host to resolve drivers for, null for the running host
+     */
+    void setHostProfile(HostProfile hostProfile) {
+        this.hostProfile = hostProfile;
+    }
+
+    private HostProfile hostProfile() {
+        return hostProfile != null ? hostProfile : HostProfile.current();
+    }
+
+    /**
+     * Writes this repository as binary snapshot, see {@link RepositorySnapshot}.
+     */
+    void writeSnapshot(Path snapshotFile) throws IOException {
+        RepositorySnapshot.write(drivers, driversById, snapshotFile);
+    }
+
+    /**
+     * Looks for a snapshot next to the repository json, e.g.
+     * {@code drivers_config.snapshot} for {@code drivers_config.json}. Only local
+     * files and class path resources are considered, a snapshot older than its
+     * json file is ignored.
+     *
+     * @return the snapshot or null to fall back to the json repository
+     */
+    private static RepositorySnapshot readSnapshot(URL repositoryUrl) {
+        if (!repositoryUrl.getProtocol().contains("file")) {
+            return null;
+        }
+        try {
+            String url = repositoryUrl.toString();
+            if (url.contains(".jar!\\") || url.contains(".jar!/")) {
+                String resource = snapshotName(url.substring(url.lastIndexOf("!/") + 2));
+                try (InputStream inputStream = getResourceFileStream(resource)) {
+                    if (inputStream == null) {
+                        return null;
+                    }
+                    return RepositorySnapshot.read(ByteBuffer.wrap(IOUtils.toByteArray(inputStream)));
+                }
+            }
+
+            Path jsonFile = Paths.get(repositoryUrl.toURI());
+            Path snapshotFile = jsonFile.resolveSibling(snapshotName(jsonFile.getFileName().toString()));
+            if (!Files.isRegularFile(snapshotFile)) {
+                return null;
+            }
+            if (Files.exists(jsonFile)
+                    && Files.getLastModifiedTime(jsonFile).compareTo(Files.getLastModifiedTime(snapshotFile)) > 0) {
+                logger.info("  Ignoring repository snapshot " + Utils.quote(snapshotFile) + " since it is older than the repository");
+                return null;
+            }
+            return RepositorySnapshot.read(snapshotFile);
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            logger.warn("  Failed to read repository snapshot for " + Utils.quote(repositoryUrl) + ", using json instead", e);
+            return null;
+        }
+    }
 
-        return repository;
+    static String snapshotName(String repositoryFileName) {
+        String baseName = repositoryFileName.endsWith(".json")
+                ? repositoryFileName.substring(0, repositoryFileName.length() - ".json".length())
+                : repositoryFileName;
+        return baseName + RepositorySnapshot.SNAPSHOT_EXTENSION;
     }
 
-    @SuppressWarnings("unchecked")
     private static List<Driver> sortDrivers(List<Driver> drivers) {
-        Comparator byId = new ArgumentComparator(on(Driver.class).getId());
-        Comparator byVersion = new ArgumentComparator(on(Driver.class).getVersion());
-        Comparator orderByIdAndVersion = ComparatorUtils.chainedComparator(byId, byVersion);
+        List<Driver> sortedDrivers = new ArrayList<>(drivers);
+        Collections.sort(sortedDrivers, BY_ID_AND_VERSION);
+        return sortedDrivers;
+    }
 
-        return sort(drivers, on(Driver.class), orderByIdAndVersion);
+    private static Map<String, List<Driver>> indexDrivers(List<Driver> sortedDrivers) {
+        Map<String, List<Driver>> driversById = new LinkedHashMap<>();
+        int first = 0;
+        for (int i = 1; i <= sortedDrivers.size(); i++) {
+            if (i == sortedDrivers.size() || !sortedDrivers.get(i).getId().equals(sortedDrivers.get(first).getId())) {
+                driversById.put(sortedDrivers.get(first).getId(),
+                        Collections.unmodifiableList(sortedDrivers.subList(first, i)));
+                first = i;
+            }
+        }
+        return driversById;
     }
 
     private static String downloadAsString(URL url) throws IOException {
@@ -74,6 +298,10 @@ class Repository {
         } else {
             URLConnection connection;
             connection = url.openConnection();
+            connection.setConnectTimeout(REPOSITORY_CONNECT_TIMEOUT);
+            connection.setReadTimeout(REPOSITORY_READ_TIMEOUT);
+            // e.g. a driver bundle replaced since it was read last
+            connection.setUseCaches(false);
             try (InputStream inputStream = connection.getInputStream()) {
                 return IOUtils.toString(inputStream, UTF_8);
             }
@@ -117,52 +345,233 @@ class Repository {
     }
 
     Driver enrichDriver(Driver driver) throws InstallWebDriversException {
-        if (isBlank(driver.getName())) {
-            throw new InstallWebDriversException("Driver name must be set in configuration, driver: " + driver);
-        }
-        if (isNotBlank(driver.getUrl())) {
-            return driver;
-        }
-        if (isNotBlank(driver.getPlatform()) || isNotBlank(driver.getBit()) || isNotBlank(driver.getVersion())) {
-            // Explicit driver config make sure it exists in repo
-            if (getDrivers(driver.getName(), driver.getPlatform(), driver.getBit(), driver.getVersion()).size() == 0) {
-                throw new InstallWebDriversException("Could not find driver: " + driver + System.lineSeparator()
+        DriverResolution resolution = resolveAll(Collections.singletonList(driver)).get(0);
+        switch (resolution.getStatus()) {
+            case RESOLVED:
+                return isNotBlank(driver.getUrl()) ? driver : resolution.getResolved().toDriver();
+            case NOT_IN_REPOSITORY:
+                throw new InstallWebDriversException(resolution.getDiagnostic() + System.lineSeparator()
                         + System.lineSeparator()
                         + "in repository: " + this);
+            case UNREACHABLE:
+                return null;
+            default:
+                throw new InstallWebDriversException(resolution.getDiagnostic());
+        }
+    }
+
+    /**
+     * Resolves all specs in one pass over the repository. The specs are not
+     * modified, every spec gets a resolution in the same order, either the
+     * resolved driver or a diagnostic why it could not be resolved.
+     * <p>
+     * Missing platform and bit are set to the running platform and bit. The
+     * version may be exact or a {@link VersionRange}, the highest matching version
+     * is taken, a missing version takes the latest. Without version but with a
+     * browser version the latest driver supporting that browser version is taken.
+     * When no 64 bit driver exists the 32 bit driver is used instead.
+     */
+    List<DriverResolution> resolveAll(List<Driver> specs) {
+        Set<String> requestedNames = new HashSet<>();
+        for (Driver spec : specs) {
+            if (isNotBlank(spec.getName()) && isBlank(spec.getUrl())) {
+                requestedNames.add(spec.getName().toLowerCase());
+            }
+        }
+
+        Map<String, List<List<Driver>>> groupsByName = new HashMap<>();
+        if (!requestedNames.isEmpty()) {
+            for (List<Driver> driverVersions : driversById.values()) {
+                String name = driverVersions.get(0).getName().toLowerCase();
+                if (requestedNames.contains(name)) {
+                    List<List<Driver>> groups = groupsByName.get(name);
+                    if (groups == null) {
+                        groups = new ArrayList<>();
+                        groupsByName.put(name, groups);
+                    }
+                    groups.add(driverVersions);
+                }
+            }
+        }
+
+        String platform = null;
+        Map<String, String> bitsByName = new HashMap<>();
+        Map<String, String> installedBrowserVersions = new HashMap<>();
+        List<DriverResolution> resolutions = new ArrayList<>(specs.size());
+        for (Driver spec : specs) {
+            if (isBlank(spec.getName()) || isNotBlank(spec.getUrl())) {
+                resolutions.add(resolve(spec, Collections.<List<Driver>>emptyList(), null, null, null));
+                continue;
+            }
+            String name = spec.getName().toLowerCase();
+            if (platform == null && isBlank(spec.getPlatform())) {
+                platform = detectPlatform();
+            }
+            String bit = bitsByName.get(name);
+            if (bit == null && isBlank(spec.getBit())) {
+                bit = detectBits(name);
+                bitsByName.put(name, bit);
             }
+            String browserVersion = null;
+            if (isBlank(spec.getVersion()) && isNotBlank(spec.getBrowserVersion())) {
+                browserVersion = BrowserVersionDetector.INSTALLED.equalsIgnoreCase(spec.getBrowserVersion())
+                        ? installedBrowserVersion(name, installedBrowserVersions)
+                        : spec.getBrowserVersion();
+            }
+            List<List<Driver>> groups = groupsByName.get(name);
+            resolutions.add(resolve(spec,
+                    groups != null ? groups : Collections.<List<Driver>>emptyList(),
+                    platform,
+                    bit,
+                    browserVersion));
         }
+        return resolutions;
+    }
 
-        if (isBlank(driver.getPlatform())) {
-            driver.setPlatform(detectPlatform());
+    private String installedBrowserVersion(String driverName, Map<String, String> installedBrowserVersions) {
+        String browser = BrowserVersionDetector.browserForDriver(driverName);
+        if (browser == null || browserVersionDetector == null) {
+            logger.warn("  Can not detect the browser of " + driverName + ", using the latest version");
+            return null;
         }
-        if (isBlank(driver.getBit())) {
-            driver.setBit(detectBits(driver.getName()));
+        if (!installedBrowserVersions.containsKey(browser)) {
+            String version = browserVersionDetector.detectVersion(browser);
+            if (version == null) {
+                logger.warn("  Browser " + browser + " is not installed, using the latest version of " + driverName);
+            }
+            installedBrowserVersions.put(browser, version);
         }
-        if (isBlank(driver.getVersion())) {
-            driver.setVersion(getLatestDriverVersion(driver.getId()));
+        return installedBrowserVersions.get(browser);
+    }
+
+    /**
+     * @param groups         the id groups of the spec name, each sorted by version
+     * @param browserVersion browser version the driver must support or null
+     */
+    private static DriverResolution resolve(Driver spec, List<List<Driver>> groups, String hostPlatform, String hostBit,
+                                            String browserVersion) {
+        if (isBlank(spec.getName())) {
+            return DriverResolution.failed(spec, DriverResolution.Status.INVALID_SPEC,
+                    "Driver name must be set in configuration, driver: " + spec);
+        }
+        if (isNotBlank(spec.getUrl())) {
+            return DriverResolution.resolved(spec, ResolvedDriver.of(spec));
         }
 
-        List<Driver> drivers = getDrivers(driver.getName(),
-                driver.getPlatform(),
-                driver.getBit(),
-                driver.getVersion());
-        if (drivers.isEmpty()) {
-            if ("64".equals(driver.getBit())) {
-                // toogle bits and try the other bit to get a driver configuration
-                drivers = getDrivers(driver.getName(),
-                        driver.getPlatform(),
-                        "32",
-                        driver.getVersion());
+        VersionRange versionRange;
+        try {
+            versionRange = VersionRange.parse(spec.getVersion());
+        } catch (IllegalArgumentException e) {
+            return DriverResolution.failed(spec, DriverResolution.Status.INVALID_SPEC,
+                    e.getMessage() + ", driver: " + spec);
+        }
 
-                if (drivers.isEmpty()) {
-                    // Could not find any driver for the current platform/bit/version in repo
-                    return null;
+        if (isNotBlank(spec.getPlatform()) || isNotBlank(spec.getBit()) || isNotBlank(spec.getVersion())) {
+            // Explicit driver config make sure it exists in repo
+            if (highestMatches(groups, spec.getPlatform(), spec.getBit(), versionRange).isEmpty()) {
+                return DriverResolution.failed(spec, DriverResolution.Status.NOT_IN_REPOSITORY,
+                        "Could not find driver: " + spec);
+            }
+        }
+
+        String platform = isBlank(spec.getPlatform()) ? hostPlatform : spec.getPlatform();
+        String bit = isBlank(spec.getBit()) ? hostBit : spec.getBit();
+
+        List<Driver> matches = browserVersion != null
+                ? browserCompatibleMatches(groups, platform, bit, browserVersion)
+                : highestMatches(groups, platform, bit, versionRange);
+        if (matches.isEmpty() && "64".equals(bit)) {
+            // toogle bits and try the other bit to get a driver configuration
+            matches = browserVersion != null
+                    ? browserCompatibleMatches(groups, platform, "32", browserVersion)
+                    : highestMatches(groups, platform, "32", versionRange);
+        }
+        if (matches.isEmpty()) {
+            // Could not find any driver for the current platform/bit/version in repo
+            return DriverResolution.failed(spec, DriverResolution.Status.UNREACHABLE,
+                    "No driver " + spec.getName() + " for platform " + platform + ", bit " + bit
+                            + (isNotBlank(spec.getVersion()) ? " and version " + spec.getVersion() : "")
+                            + (browserVersion != null ? " supporting browser version " + browserVersion : "")
+                            + " in repository");
+        }
+        return DriverResolution.resolved(spec, ResolvedDriver.of(matches.get(0)));
+    }
+
+    /**
+     * Drivers declare the browser versions they support with
+     * {@link Driver#getBrowserVersions()}, drivers without declaration are
+     * expected to share the major version with the browser (as chromedriver
+     * does since version 70). Compatibility is not ordered by driver version,
+     * so the groups are scanned from the latest version down.
+     *
+     * @return the latest driver supporting the browser version of every id group matching platform and bit
+     */
+    private static List<Driver> browserCompatibleMatches(List<List<Driver>> groups, String platform, String bit,
+                                                         String browserVersion) {
+        ComparableVersion comparableBrowserVersion = new ComparableVersion(browserVersion);
+        String browserMajorVersion = majorVersion(browserVersion);
+        List<Driver> matches = new ArrayList<>(1);
+        for (List<Driver> group : groups) {
+            Driver first = group.get(0);
+            if (isNotBlank(platform) && !platform.equalsIgnoreCase(first.getPlatform())) {
+                continue;
+            }
+            if (isNotBlank(bit) && !bit.equalsIgnoreCase(first.getBit())) {
+                continue;
+            }
+            for (int i = group.size() - 1; i >= 0; i--) {
+                if (supportsBrowser(group.get(i), comparableBrowserVersion, browserMajorVersion)) {
+                    matches.add(group.get(i));
+                    break;
                 }
-                return filterLatestDriver(drivers);
             }
+        }
+        return matches;
+    }
+
+    private static boolean supportsBrowser(Driver driver, ComparableVersion browserVersion, String browserMajorVersion) {
+        if (isNotBlank(driver.getBrowserVersions())) {
+            try {
+                return VersionRange.parse(driver.getBrowserVersions()).contains(browserVersion);
+            } catch (IllegalArgumentException e) {
+                logger.warn("  Ignoring invalid browser versions of " + driver.getId() + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return browserMajorVersion != null && browserMajorVersion.equals(majorVersion(driver.getVersion()));
+    }
+
+    private static String majorVersion(String version) {
+        if (version == null) {
             return null;
         }
-        return drivers.get(0);
+        int end = 0;
+        while (end < version.length() && Character.isDigit(version.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? null : version.substring(0, end);
+    }
+
+    /**
+     * @return the highest version in range of every id group matching platform and bit
+     */
+    private static List<Driver> highestMatches(List<List<Driver>> groups, String platform, String bit, VersionRange versionRange) {
+        List<Driver> matches = new ArrayList<>(1);
+        for (List<Driver> group : groups) {
+            // all drivers of a group share name, platform and bit
+            Driver first = group.get(0);
+            if (isNotBlank(platform) && !platform.equalsIgnoreCase(first.getPlatform())) {
+                continue;
+            }
+            if (isNotBlank(bit) && !bit.equalsIgnoreCase(first.getBit())) {
+                continue;
+            }
+            Driver match = versionRange.highestMatch(group);
+            if (match != null) {
+                matches.add(match);
+            }
+        }
+        return matches;
     }
 
     List<Driver> getLatestDrivers() {
@@ -200,43 +609,23 @@ class Repository {
                 on(Driver.class).getComparableVersion());
     }
 
-    private static String detectBits(String driverName) {
+    private String detectBits(String driverName) {
+        HostProfile host = hostProfile();
         // Default installed internetexplorer bit version on < Windows 10 versions is 32 bit
-        if (driverName.equals("internetexplorerdriver") && !Utils.isWindows10()) {
+        if (driverName.equals("internetexplorerdriver") && !host.isWindows10()) {
             return "32";
         }
 
         // Detect bit version from os
-        if (Utils.is64Bit()) {
-            return "64";
-        }
-        return "32";
-    }
-
-    private static String detectPlatform() {
-        if (Utils.isMac()) {
-            return "mac";
-        } else if (Utils.isLinux()) {
-            return "linux";
-        }
-        return "windows";
-    }
-
-    private String getLatestDriverVersion(String driverId) {
-        List<Driver> allDriverVersions = select(drivers, having(on(Driver.class).getId(), is(driverId)));
-        Driver latestDriver = filterLatestDriver(allDriverVersions);
-        if (latestDriver == null) {
-            return null;
-        }
-        return latestDriver.getVersion();
+        return host.is64Bit() ? "64" : "32";
     }
 
-    private Driver filterLatestDriver(List<Driver> drivers) {
-        return selectMax(drivers, on(Driver.class).getComparableVersion());
+    private String detectPlatform() {
+        return hostProfile().getPlatform();
     }
 
     @Override
     public String toString() {
-        return new GsonBuilder().setPrettyPrinting().create().toJson(this);
+        return PRETTY_GSON.toJson(this);
     }
 }
@@ -0,0 +1,208 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a repository. The drivers are stored sorted by id and
+ * version together with an index of the id groups, all strings are stored once
+ * in a string table and referenced by position. Reading a snapshot needs no
+ * parsing, reflection or sorting.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int    magic
+ * int    format version
+ * int    string count, then per string: int byte length, UTF-8 bytes
+ * int    driver count, then per driver: 7 string refs (name, platform, bit, version, url, fileMatchInside,
+ *        browserVersions)
+ * int    group count, then per group: string ref of the id, int first driver, int driver count
+ * </pre>
+ * A string ref of -1 stands for null.
+ */
+class RepositorySnapshot {
+
+    static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private static final int MAGIC = 0x57444953; // "WDIS"
+    private static final int FORMAT_VERSION = 2;
+    private static final int NULL_REF = -1;
+
+    private final List<Driver> drivers;
+    private final Map<String, List<Driver>> driversById;
+
+    private RepositorySnapshot(List<Driver> drivers, Map<String, List<Driver>> driversById) {
+        this.drivers = drivers;
+        this.driversById = driversById;
+    }
+
+    /**
+     * @return drivers sorted by id and version
+     */
+    List<Driver> getDrivers() {
+        return drivers;
+    }
+
+    /**
+     * @return drivers grouped by id, each group sorted by version
+     */
+    Map<String, List<Driver>> getDriversById() {
+        return driversById;
+    }
+
+    static RepositorySnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static RepositorySnapshot read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a repository snapshot");
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported repository snapshot format version " + formatVersion);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int driverCount = buffer.getInt();
+            List<Driver> drivers = new ArrayList<>(driverCount);
+            for (int i = 0; i < driverCount; i++) {
+                Driver driver = new Driver();
+                driver.setName(string(strings, buffer.getInt()));
+                driver.setPlatform(string(strings, buffer.getInt()));
+                driver.setBit(string(strings, buffer.getInt()));
+                driver.setVersion(string(strings, buffer.getInt()));
+                driver.setUrl(string(strings, buffer.getInt()));
+                driver.setFileMatchInside(string(strings, buffer.getInt()));
+                driver.setBrowserVersions(string(strings, buffer.getInt()));
+                drivers.add(driver);
+            }
+
+            int groupCount = buffer.getInt();
+            Map<String, List<Driver>> driversById = new LinkedHashMap<>(groupCount * 2);
+            for (int i = 0; i < groupCount; i++) {
+                String id = string(strings, buffer.getInt());
+                int first = buffer.getInt();
+                int count = buffer.getInt();
+                driversById.put(id, Collections.unmodifiableList(drivers.subList(first, first + count)));
+            }
+
+            return new RepositorySnapshot(drivers, driversById);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException or IndexOutOfBoundsException on a truncated or corrupt file
+            throw new IOException("Corrupt repository snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the drivers as snapshot, the file is replaced atomically.
+     *
+     * @param sortedDrivers  drivers sorted by id and version
+     * @param driversById    id groups of the sorted drivers
+     * @param file           snapshot file to write
+     */
+    static void write(List<Driver> sortedDrivers, Map<String, List<Driver>> driversById, Path file) throws IOException {
+        Map<String, Integer> stringRefs = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Driver driver : sortedDrivers) {
+            for (String value : values(driver)) {
+                intern(value, stringRefs, strings);
+            }
+        }
+        for (String id : driversById.keySet()) {
+            intern(id, stringRefs, strings);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            out.writeInt(strings.size());
+            for (String value : strings) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+
+            out.writeInt(sortedDrivers.size());
+            for (Driver driver : sortedDrivers) {
+                for (String value : values(driver)) {
+                    out.writeInt(value == null ? NULL_REF : stringRefs.get(value));
+                }
+            }
+
+            out.writeInt(driversById.size());
+            int first = 0;
+            for (Map.Entry<String, List<Driver>> group : driversById.entrySet()) {
+                out.writeInt(stringRefs.get(group.getKey()));
+                out.writeInt(first);
+                out.writeInt(group.getValue().size());
+                first += group.getValue().size();
+            }
+            if (first != sortedDrivers.size()) {
+                throw new IllegalArgumentException("Driver groups do not cover the sorted drivers");
+            }
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, bytes.toByteArray());
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static String[] values(Driver driver) {
+        return new String[]{
+                driver.getName(),
+                driver.getPlatform(),
+                driver.getBit(),
+                driver.getVersion(),
+                driver.getUrl(),
+                driver.getFileMatchInside(),
+                driver.getBrowserVersions()
+        };
+    }
+
+    private static void intern(String value, Map<String, Integer> stringRefs, List<String> strings) {
+        if (value != null && !stringRefs.containsKey(value)) {
+            stringRefs.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    private static String string(String[] strings, int ref) {
+        return ref == NULL_REF ? null : strings[ref];
+    }
+}
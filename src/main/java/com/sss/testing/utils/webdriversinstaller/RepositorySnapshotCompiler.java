@@ -0,0 +1,45 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compiles a repository json into a binary snapshot that {@link Repository}
+ * loads instead of the json when it lies next to it.
+ * <p>
+ * Usage: {@code RepositorySnapshotCompiler <repository json file or url> [snapshot file]},
+ * the snapshot file defaults to the json file name with the {@code .snapshot} extension.
+ */
+public class RepositorySnapshotCompiler {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: RepositorySnapshotCompiler <repository json file or url> [snapshot file]");
+            System.exit(2);
+        }
+        URL repositoryUrl = toUrl(args[0]);
+        Path snapshotFile = args.length == 2
+                ? Paths.get(args[1])
+                : Paths.get(Repository.snapshotName(new File(repositoryUrl.getPath()).getName()));
+        compile(repositoryUrl, snapshotFile);
+        System.out.println("Compiled " + Utils.quote(repositoryUrl) + " to " + Utils.quote(snapshotFile));
+    }
+
+    public static void compile(URL repositoryUrl, Path snapshotFile) throws InstallWebDriversException, IOException {
+        // a stale snapshot next to the json would be picked up instead of the json
+        Repository repository = new Repository().loadJson(repositoryUrl);
+        repository.writeSnapshot(snapshotFile);
+    }
+
+    private static URL toUrl(String location) throws MalformedURLException {
+        try {
+            return new URL(location);
+        } catch (MalformedURLException e) {
+            return new File(location).toURI().toURL();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.net.URL;
+
+/**
+ * A repository file location together with its priority. When several sources
+ * describe the same driver (same id and version) the entry of the source with
+ * the highest priority wins, ties are won by the source declared first.
+ */
+public class RepositorySource {
+
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private final URL url;
+    private final int priority;
+
+    public RepositorySource(URL url) {
+        this(url, DEFAULT_PRIORITY);
+    }
+
+    public RepositorySource(URL url, int priority) {
+        if (url == null) {
+            throw new IllegalArgumentException("Repository url must be set");
+        }
+        this.url = url;
+        this.priority = priority;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return url + " (priority " + priority + ")";
+    }
+}
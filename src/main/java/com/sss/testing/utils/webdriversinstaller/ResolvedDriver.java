@@ -0,0 +1,102 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import com.google.gson.Gson;
+
+import java.util.Objects;
+
+/**
+ * Immutable result of resolving a {@link Driver} spec against a repository,
+ * all of name, platform, bit, version and url are set.
+ */
+public final class ResolvedDriver {
+
+    private final String name;
+    private final String platform;
+    private final String bit;
+    private final String version;
+    private final String url;
+    private final String fileMatchInside;
+
+    private ResolvedDriver(Driver driver) {
+        this.name = driver.getName();
+        this.platform = driver.getPlatform();
+        this.bit = driver.getBit();
+        this.version = driver.getVersion();
+        this.url = driver.getUrl();
+        this.fileMatchInside = driver.getFileMatchInside();
+    }
+
+    static ResolvedDriver of(Driver driver) {
+        return new ResolvedDriver(driver);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public String getBit() {
+        return bit;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getFileMatchInside() {
+        return fileMatchInside;
+    }
+
+    public String getId() {
+        return toDriver().getId();
+    }
+
+    /**
+     * @return a new mutable driver with the resolved values, e.g. to pass it to
+     * {@link InstallWebDrivers#installDriver(Driver)}
+     */
+    public Driver toDriver() {
+        Driver driver = new Driver();
+        driver.setName(name);
+        driver.setPlatform(platform);
+        driver.setBit(bit);
+        driver.setVersion(version);
+        driver.setUrl(url);
+        driver.setFileMatchInside(fileMatchInside);
+        return driver;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResolvedDriver)) {
+            return false;
+        }
+        ResolvedDriver that = (ResolvedDriver) o;
+        return Objects.equals(name, that.name)
+                && Objects.equals(platform, that.platform)
+                && Objects.equals(bit, that.bit)
+                && Objects.equals(version, that.version)
+                && Objects.equals(url, that.url)
+                && Objects.equals(fileMatchInside, that.fileMatchInside);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, platform, bit, version, url, fileMatchInside);
+    }
+
+    @Override
+    public String toString() {
+        return new Gson().toJson(this);
+    }
+}
@@ -0,0 +1,66 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the average rate bytes are read from a stream, by sleeping once the
+ * bytes read so far are ahead of the rate.
+ */
+final class ThrottledInputStream extends FilterInputStream {
+
+    private final long maxBytesPerSecond;
+    private final long startNanos = System.nanoTime();
+    private long bytesRead;
+
+    ThrottledInputStream(InputStream in, long maxBytesPerSecond) {
+        super(in);
+        if (maxBytesPerSecond <= 0) {
+            throw new IllegalArgumentException("maxBytesPerSecond must be positive: " + maxBytesPerSecond);
+        }
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read >= 0) {
+            throttle(1);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        // small reads keep the rate smooth for low limits
+        int read = super.read(buffer, offset, (int) Math.min(length, Math.max(1, maxBytesPerSecond / 10)));
+        if (read > 0) {
+            throttle(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        throttle(skipped);
+        return skipped;
+    }
+
+    private void throttle(long bytes) throws IOException {
+        bytesRead += bytes;
+        long dueNanos = (long) (bytesRead * (double) TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond);
+        long aheadNanos = dueNanos - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling download");
+            }
+        }
+    }
+}
@@ -3,21 +3,24 @@ package com.sss.testing.utils.webdriversinstaller;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang3.StringUtils;
-import org.openqa.selenium.Platform;
 
 import java.io.BufferedInputStream;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -28,6 +31,13 @@ public class Utils {
     public static final String FAKED_OS_NAME_PROPERTY_KEY = "webdriverextensions.faked.os.name";
     public static final String FAKED_BIT_PROPERTY_KEY = "webdriverextensions.faked.bit";
 
+    /**
+     * Limits of {@link #directoryToString(Path)}, so a failure in a large
+     * shared installation directory does not list all of it.
+     */
+    static final int DIRECTORY_LISTING_MAX_FILES = 100;
+    static final int DIRECTORY_LISTING_MAX_DEPTH = 4;
+
     public static String quote(String text) {
         return "\"" + text + "\"";
     }
@@ -41,43 +51,34 @@ public class Utils {
     }
 
     public static boolean isWindows() {
-        if (System.getProperty(FAKED_OS_NAME_PROPERTY_KEY) != null) {
-            return System.getProperty(FAKED_OS_NAME_PROPERTY_KEY).equals("windows");
-        }
-        return Platform.getCurrent().is(Platform.WINDOWS);
+        return HostProfile.current().isWindows();
     }
 
     public static boolean isWindows10() {
-        if (System.getProperty(FAKED_OS_NAME_PROPERTY_KEY) != null) {
-            return System.getProperty(FAKED_OS_NAME_PROPERTY_KEY).equals("windows10");
-        }
-        return Platform.getCurrent().is(Platform.WIN10);
+        return HostProfile.current().isWindows10();
     }
 
     public static boolean isMac() {
-        if (System.getProperty(FAKED_OS_NAME_PROPERTY_KEY) != null) {
-            return System.getProperty(FAKED_OS_NAME_PROPERTY_KEY).equals("mac");
-        }
-        return Platform.getCurrent().is(Platform.MAC);
+        return HostProfile.current().isMac();
     }
 
     public static boolean isLinux() {
-        if (System.getProperty(FAKED_OS_NAME_PROPERTY_KEY) != null) {
-            return System.getProperty(FAKED_OS_NAME_PROPERTY_KEY).equals("linux");
-        }
-        return Platform.getCurrent().is(Platform.LINUX);
+        return HostProfile.current().isLinux();
     }
 
     public static boolean is64Bit() {
-        if (System.getProperty(FAKED_BIT_PROPERTY_KEY) != null) {
-            switch (System.getProperty(FAKED_BIT_PROPERTY_KEY)) {
-                case "64":
-                    return true;
-                case "32":
-                    return false;
+        return HostProfile.current().is64Bit();
+    }
+
+    static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
             }
-        }
-        return com.sun.jna.Platform.is64Bit();
+        };
     }
 
     public static String debugInfo(InstallWebDrivers mojo) {
@@ -93,13 +94,22 @@ public class Utils {
     }
 
     public static String debugInfo(InstallWebDrivers mojo, Driver driver) {
+        return debugInfo(driver, mojo.downloadDirectory, mojo.tempDirectory, mojo.installationDirectory.toPath());
+    }
+
+    static String debugInfo(Driver driver, Path downloadDirectory, Path tempDirectory, Path installationDirectory) {
         return System.lineSeparator() + System.lineSeparator()
                 + "driver: " + driver + System.lineSeparator() + System.lineSeparator()
-                + "downloadDirectory: " + System.lineSeparator() + directoryToString(mojo.downloadDirectory) + System.lineSeparator()
-                + "tempDirectory: " + System.lineSeparator() + directoryToString(mojo.tempDirectory) + System.lineSeparator()
-                + "installationDirectory: " + System.lineSeparator() + directoryToString(mojo.installationDirectory.toPath());
+                + "downloadDirectory: " + System.lineSeparator() + directoryToString(downloadDirectory) + System.lineSeparator()
+                + "tempDirectory: " + System.lineSeparator() + directoryToString(tempDirectory) + System.lineSeparator()
+                + "installationDirectory: " + System.lineSeparator() + directoryToString(installationDirectory);
     }
 
+    /**
+     * Lists the files below the directory with their sizes, at most
+     * {@value #DIRECTORY_LISTING_MAX_FILES} files down to a depth of
+     * {@value #DIRECTORY_LISTING_MAX_DEPTH}.
+     */
     public static String directoryToString(Path path) {
         if (!path.toFile().exists()) {
             return path + " does not exist" + System.lineSeparator();
@@ -108,13 +118,38 @@ public class Utils {
             throw new IllegalArgumentException("The path is not a directory: " + path);
         }
 
-        Collection<File> files = FileUtils.listFiles(
-                path.toFile(),
-                new RegexFileFilter("^(.*?)"),
-                DirectoryFileFilter.DIRECTORY
-        );
+        final List<Path> files = new ArrayList<>();
+        final List<Long> sizes = new ArrayList<>();
+        final boolean[] truncated = {false};
+        try {
+            Files.walkFileTree(path, EnumSet.noneOf(FileVisitOption.class), DIRECTORY_LISTING_MAX_DEPTH, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isDirectory()) {
+                        // below the maximum depth
+                        truncated[0] = true;
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (files.size() == DIRECTORY_LISTING_MAX_FILES) {
+                        truncated[0] = true;
+                        return FileVisitResult.TERMINATE;
+                    }
+                    files.add(file);
+                    sizes.add(attributes.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // e.g. deleted while listing
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            return path + " could not be listed cause of " + e + System.lineSeparator();
+        }
 
-        if (files.size() == 0) {
+        if (files.isEmpty() && !truncated[0]) {
             return path + " is empty" + System.lineSeparator();
         }
 
@@ -123,40 +158,30 @@ public class Utils {
         stringBuilder.append(path);
         stringBuilder.append(System.lineSeparator());
 
-        int padSize = longestPath(files, path.toFile());
-        for (Iterator iterator = files.iterator(); iterator.hasNext(); ) {
-            File file = (File) iterator.next();
-            String relativePath = getRelativePath(file, path.toFile());
-            if (iterator.hasNext()) {
+        int padSize = 0;
+        for (Path file : files) {
+            padSize = Math.max(padSize, path.relativize(file).toString().length());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (i < files.size() - 1 || truncated[0]) {
                 stringBuilder.append("├── ");
             } else {
                 stringBuilder.append("└── ");
             }
-            stringBuilder.append(StringUtils.rightPad(relativePath, padSize));
-            stringBuilder.append(readableFileSize(file));
+            stringBuilder.append(StringUtils.rightPad(path.relativize(files.get(i)).toString(), padSize));
+            stringBuilder.append(readableFileSize(sizes.get(i)));
             stringBuilder.append(System.lineSeparator());
         }
-
-        return stringBuilder.toString();
-    }
-
-    private static int longestPath(Collection<File> files, File relativeToPath) {
-        int max = 0;
-        for (File file : files) {
-            int currentPathLength = getRelativePath(file, relativeToPath).length();
-            if (currentPathLength > max) {
-                max = currentPathLength;
-            }
+        if (truncated[0]) {
+            stringBuilder.append("└── ... more files not listed, the listing stops at ").append(DIRECTORY_LISTING_MAX_FILES)
+                    .append(" files and a depth of ").append(DIRECTORY_LISTING_MAX_DEPTH);
+            stringBuilder.append(System.lineSeparator());
         }
-        return max;
-    }
 
-    private static String getRelativePath(File file, File relativeToPath) {
-        return StringUtils.replaceOnce(file.getAbsolutePath(), relativeToPath.getAbsolutePath() + File.separator, "");
+        return stringBuilder.toString();
     }
 
-    private static String readableFileSize(File file) {
-        long size = FileUtils.sizeOf(file);
+    private static String readableFileSize(long size) {
         if (size <= 0) {
             return "0";
         }
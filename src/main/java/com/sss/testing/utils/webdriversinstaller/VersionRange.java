@@ -0,0 +1,222 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Version constraint of a driver spec. Supported forms are
+ * <ul>
+ * <li>an exact version, e.g. <code>2.32</code>, that matches all equal versions like <code>2.32.0</code>,</li>
+ * <li>Maven style ranges, e.g. <code>[2.30,3.0)</code>, <code>[0.19,]</code>, <code>(,3.0)</code>,
+ * <code>[2.32]</code> or unions like <code>[2.30,2.32],[2.35,)</code>,</li>
+ * <li>tilde ranges that pin a series: <code>~0.19</code> is <code>[0.19,0.20)</code>,
+ * <code>~2.32.1</code> is <code>[2.32.1,2.33)</code> and <code>~2</code> is <code>[2,3)</code>.</li>
+ * </ul>
+ * Ranges are matched against lists sorted by version with binary search.
+ */
+public final class VersionRange {
+
+    /**
+     * Matches any version.
+     */
+    public static final VersionRange ANY = new VersionRange("",
+            Collections.singletonList(new Restriction(null, false, null, false)));
+
+    private final String spec;
+    private final List<Restriction> restrictions;
+
+    private VersionRange(String spec, List<Restriction> restrictions) {
+        this.spec = spec;
+        this.restrictions = restrictions;
+    }
+
+    /**
+     * @return true if the version spec is a range rather than an exact version
+     */
+    public static boolean isRange(String versionSpec) {
+        if (versionSpec == null) {
+            return false;
+        }
+        String spec = versionSpec.trim();
+        return spec.startsWith("[") || spec.startsWith("(") || spec.startsWith("~");
+    }
+
+    /**
+     * @param versionSpec exact version or range, blank matches any version
+     * @throws IllegalArgumentException if the range can not be parsed
+     */
+    public static VersionRange parse(String versionSpec) {
+        if (versionSpec == null || versionSpec.trim().isEmpty()) {
+            return ANY;
+        }
+        String spec = versionSpec.trim();
+        if (spec.startsWith("~")) {
+            return new VersionRange(spec, Collections.singletonList(tildeRestriction(spec.substring(1).trim())));
+        }
+        if (!isRange(spec)) {
+            ComparableVersion version = new ComparableVersion(spec);
+            return new VersionRange(spec, Collections.singletonList(new Restriction(version, true, version, true)));
+        }
+
+        List<Restriction> restrictions = new ArrayList<>();
+        String remaining = spec;
+        while (!remaining.isEmpty()) {
+            if (!remaining.startsWith("[") && !remaining.startsWith("(")) {
+                throw new IllegalArgumentException("Invalid version range " + Utils.quote(spec));
+            }
+            int end = indexOfClose(remaining);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unbounded version range " + Utils.quote(spec));
+            }
+            restrictions.add(parseRestriction(remaining.substring(0, end + 1), spec));
+            remaining = remaining.substring(end + 1).trim();
+            if (remaining.startsWith(",")) {
+                remaining = remaining.substring(1).trim();
+            }
+        }
+        return new VersionRange(spec, Collections.unmodifiableList(restrictions));
+    }
+
+    public boolean contains(ComparableVersion version) {
+        for (Restriction restriction : restrictions) {
+            if (restriction.contains(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param sortedByVersion drivers sorted by ascending version
+     * @return the driver with the highest version in this range or null if none matches
+     */
+    public Driver highestMatch(List<Driver> sortedByVersion) {
+        int best = -1;
+        for (Restriction restriction : restrictions) {
+            int index = restriction.highestMatch(sortedByVersion);
+            if (index > best) {
+                best = index;
+            }
+        }
+        return best < 0 ? null : sortedByVersion.get(best);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static int indexOfClose(String range) {
+        int square = range.indexOf(']');
+        int round = range.indexOf(')');
+        if (square < 0) {
+            return round;
+        }
+        return round < 0 ? square : Math.min(square, round);
+    }
+
+    private static Restriction parseRestriction(String range, String spec) {
+        boolean lowerInclusive = range.startsWith("[");
+        boolean upperInclusive = range.endsWith("]");
+        String bounds = range.substring(1, range.length() - 1).trim();
+
+        int comma = bounds.indexOf(',');
+        if (comma < 0) {
+            if (!lowerInclusive || !upperInclusive || bounds.isEmpty()) {
+                throw new IllegalArgumentException("Single version must be surrounded by [] in " + Utils.quote(spec));
+            }
+            ComparableVersion version = new ComparableVersion(bounds);
+            return new Restriction(version, true, version, true);
+        }
+
+        String lower = bounds.substring(0, comma).trim();
+        String upper = bounds.substring(comma + 1).trim();
+        if (upper.contains(",")) {
+            throw new IllegalArgumentException("Invalid version range " + Utils.quote(range) + " in " + Utils.quote(spec));
+        }
+        ComparableVersion lowerVersion = lower.isEmpty() ? null : new ComparableVersion(lower);
+        ComparableVersion upperVersion = upper.isEmpty() ? null : new ComparableVersion(upper);
+        if (lowerVersion != null && upperVersion != null && lowerVersion.compareTo(upperVersion) > 0) {
+            throw new IllegalArgumentException("Lower bound above upper bound in " + Utils.quote(spec));
+        }
+        return new Restriction(lowerVersion, lowerInclusive, upperVersion, upperInclusive);
+    }
+
+    private static Restriction tildeRestriction(String version) {
+        String[] components = version.split("[.-]");
+        List<Long> numbers = new ArrayList<>();
+        for (String component : components) {
+            if (component.isEmpty() || !component.chars().allMatch(Character::isDigit)) {
+                break;
+            }
+            numbers.add(Long.parseLong(component));
+        }
+        if (numbers.isEmpty()) {
+            throw new IllegalArgumentException("Tilde range must start with a number: " + Utils.quote("~" + version));
+        }
+        String upper = numbers.size() >= 2
+                ? numbers.get(0) + "." + (numbers.get(1) + 1)
+                : String.valueOf(numbers.get(0) + 1);
+        return new Restriction(new ComparableVersion(version), true, new ComparableVersion(upper), false);
+    }
+
+    private static final class Restriction {
+        private final ComparableVersion lower;
+        private final boolean lowerInclusive;
+        private final ComparableVersion upper;
+        private final boolean upperInclusive;
+
+        Restriction(ComparableVersion lower, boolean lowerInclusive, ComparableVersion upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        boolean contains(ComparableVersion version) {
+            return aboveLower(version) && belowUpper(version);
+        }
+
+        /**
+         * Binary search for the last version within the upper bound, then checks
+         * the lower bound.
+         *
+         * @return index of the highest matching driver or -1
+         */
+        int highestMatch(List<Driver> sortedByVersion) {
+            int low = 0;
+            int high = sortedByVersion.size() - 1;
+            int index = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (belowUpper(sortedByVersion.get(middle).comparableVersion())) {
+                    index = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (index >= 0 && aboveLower(sortedByVersion.get(index).comparableVersion())) {
+                return index;
+            }
+            return -1;
+        }
+
+        private boolean aboveLower(ComparableVersion version) {
+            if (lower == null) {
+                return true;
+            }
+            int comparison = version.compareTo(lower);
+            return lowerInclusive ? comparison >= 0 : comparison > 0;
+        }
+
+        private boolean belowUpper(ComparableVersion version) {
+            if (upper == null) {
+                return true;
+            }
+            int comparison = version.compareTo(upper);
+            return upperInclusive ? comparison <= 0 : comparison < 0;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.sss.testing.utils.webdriversinstaller;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unique working directories of installations and deletion off the critical
+ * path.
+ * <p>
+ * Every installation works in its own directory below the temp directory,
+ * holding a lock file in it as long as it is in use, so no installation deletes
+ * what another one is working on. Directories are deleted by renaming them
+ * away, which is atomic and cheap, and deleting the renamed directory on a
+ * background thread. At shutdown the pending deletions are finished and work
+ * directories whose lock is free, left over by crashed processes, are removed.
+ */
+final class WorkDirectories {
+    private static final Logger logger = LoggerFactory.getLogger(WorkDirectories.class);
+
+    static final String LOCK_FILE_NAME = ".lock";
+    static final long LEGACY_GRACE_PERIOD = 60 * 60 * 1000; // 1 hour
+
+    private static final ExecutorService CLEANER = Executors.newSingleThreadExecutor(
+            Utils.daemonThreadFactory("webdrivers-installer-cleanup"));
+    private static final Set<Path> PENDING_DELETIONS = ConcurrentHashMap.newKeySet();
+    /**
+     * Work directories in use by this JVM. Their locks are never probed: closing
+     * a second channel on a locked file releases the lock of the first one.
+     */
+    private static final Set<Path> IN_USE = ConcurrentHashMap.newKeySet();
+    private static final Set<Path> ROOTS = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean SHUTDOWN_HOOK_ADDED = new AtomicBoolean();
+
+    private WorkDirectories() {
+    }
+
+    /**
+     * Creates a new locked working directory, closing it releases the lock and
+     * deletes it in the background.
+     *
+     * @param root directory holding the working directories
+     */
+    static WorkDirectory create(Path root) throws IOException {
+        addShutdownHook(root);
+        Path directory = Files.createDirectories(root).resolve(UUID.randomUUID().toString());
+        // registered before the lock file exists, so orphans() never probes it
+        IN_USE.add(directory.toAbsolutePath().normalize());
+        FileChannel channel = null;
+        try {
+            Files.createDirectory(directory);
+            channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // a new file, nobody else can hold its lock
+            return new WorkDirectory(directory, channel, channel.lock());
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                deleteInBackground(directory);
+            } finally {
+                IN_USE.remove(directory.toAbsolutePath().normalize());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Renames the file or directory away and deletes it on a background thread.
+     * Does nothing if it does not exist.
+     */
+    static void deleteInBackground(Path path) throws IOException {
+        Path absolutePath = path.toAbsolutePath().normalize();
+        boolean isTrash = absolutePath.getFileName().toString().startsWith(DriverInstaller.TRASH_PREFIX);
+        final Path renamed = isTrash
+                ? absolutePath
+                : absolutePath.resolveSibling(DriverInstaller.TRASH_PREFIX + absolutePath.getFileName() + "-" + UUID.randomUUID());
+        try {
+            if (!isTrash) {
+                Files.move(absolutePath, renamed, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        PENDING_DELETIONS.add(renamed);
+        CLEANER.submit(new Runnable() {
+            @Override
+            public void run() {
+                delete(renamed);
+            }
+        });
+    }
+
+    /**
+     * Waits until the deletions submitted so far are done.
+     */
+    static void awaitPendingDeletions() throws InterruptedException {
+        try {
+            // the cleaner runs its tasks in order on one thread
+            CLEANER.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return true if the path is being deleted in the background by this JVM
+     */
+    static boolean isPendingDeletion(Path path) {
+        return PENDING_DELETIONS.contains(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * @return entries of the root no process works in anymore: renamed
+     * directories not yet deleted, work directories with a free lock not in use
+     * by this JVM, and directories of older versions without a lock file that
+     * were not modified for the grace period
+     */
+    static List<Path> orphans(Path root) throws IOException {
+        List<Path> orphans = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return orphans;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+            for (Path child : children) {
+                if (IN_USE.contains(child.toAbsolutePath().normalize())) {
+                    continue;
+                }
+                if (child.getFileName().toString().startsWith(DriverInstaller.TRASH_PREFIX)) {
+                    if (!isPendingDeletion(child)) {
+                        orphans.add(child);
+                    }
+                } else if (Files.exists(child.resolve(LOCK_FILE_NAME))) {
+                    try (Closeable lock = InstallationLocks.tryLockFile(child.resolve(LOCK_FILE_NAME))) {
+                        if (lock != null) {
+                            orphans.add(child);
+                        }
+                    }
+                } else if (System.currentTimeMillis() - Files.getLastModifiedTime(child, LinkOption.NOFOLLOW_LINKS)
+                        .toMillis() > LEGACY_GRACE_PERIOD) {
+                    orphans.add(child);
+                }
+            }
+        }
+        return orphans;
+    }
+
+    private static void delete(Path path) {
+        try {
+            FileUtils.forceDelete(path.toFile());
+        } catch (IOException e) {
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                logger.warn("  Failed to delete " + Utils.quote(path), e);
+            }
+        } finally {
+            PENDING_DELETIONS.remove(path);
+        }
+    }
+
+    private static void addShutdownHook(Path root) {
+        ROOTS.add(root.toAbsolutePath().normalize());
+        if (SHUTDOWN_HOOK_ADDED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    sweep();
+                }
+            }, "webdrivers-installer-sweep"));
+        }
+    }
+
+    private static void sweep() {
+        for (Path pending : new ArrayList<>(PENDING_DELETIONS)) {
+            delete(pending);
+        }
+        for (Path root : ROOTS) {
+            try {
+                for (Path orphan : orphans(root)) {
+                    delete(orphan);
+                }
+            } catch (IOException e) {
+                logger.warn("  Failed to sweep " + Utils.quote(root), e);
+            }
+        }
+    }
+
+    /**
+     * A working directory of one installation.
+     */
+    static final class WorkDirectory implements Closeable {
+        private final Path path;
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private WorkDirectory(Path path, FileChannel channel, FileLock lock) {
+            this.path = path;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.release();
+                channel.close();
+            } finally {
+                try {
+                    deleteInBackground(path);
+                } finally {
+                    // renamed away by now, a pending deletion is not an orphan
+                    IN_USE.remove(path.toAbsolutePath().normalize());
+                }
+            }
+        }
+    }
+}